@@ -7,6 +7,8 @@ import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
 
+import org.schabi.newpipe.local.history.HistoryRecordManager;
+
 /*
  * Copyright (C) Hans-Christoph Steiner 2016 <hans@eds.org>
  * ExitActivity.java is part of NewPipe.
@@ -38,6 +40,8 @@ public class ExitActivity extends Activity {
             finish();
         }
 
+        // Players closed along with the app still commit their history in the background
+        HistoryRecordManager.awaitFlushedWrites();
         System.exit(0);
     }
 
@@ -1,15 +1,31 @@
 package org.schabi.newpipe;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Room;
+import android.arch.persistence.room.RoomDatabase;
 import android.content.Context;
+import android.os.Build;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
 import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.LocalSearchIndex;
+
+import java.io.File;
 
 import static org.schabi.newpipe.database.AppDatabase.DATABASE_NAME;
 import static org.schabi.newpipe.database.Migrations.MIGRATION_11_12;
 
 public final class NewPipeDatabase {
+    private static final String TAG = NewPipeDatabase.class.getSimpleName();
+
+    /**
+     * An imported database, which replaces the current one the next time the app starts.
+     * The current database may be written to by players and background updates as long as
+     * the app runs, so it is only ever replaced before it is opened.
+     * */
+    private static final String IMPORTED_DATABASE_NAME = DATABASE_NAME + ".import";
+    private static final String[] JOURNAL_SUFFIXES = {"-journal", "-wal", "-shm"};
 
     private static volatile AppDatabase databaseInstance;
 
@@ -18,10 +34,21 @@ public final class NewPipeDatabase {
     }
 
     private static AppDatabase getDatabase(Context context) {
+        applyImportedDatabase(context);
         return Room
                 .databaseBuilder(context.getApplicationContext(), AppDatabase.class, DATABASE_NAME)
                 .addMigrations(MIGRATION_11_12)
                 .fallbackToDestructiveMigration()
+                // Allow reading the database while the players are writing to it
+                .setJournalMode(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                        ? RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING
+                        : RoomDatabase.JournalMode.TRUNCATE)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        LocalSearchIndex.ensureCreated(db);
+                    }
+                })
                 .build();
     }
 
@@ -39,4 +66,31 @@ public final class NewPipeDatabase {
 
         return result;
     }
+
+    /**
+     * @return the file an imported database has to be written to, to replace the current
+     * database once the app restarts
+     * */
+    @NonNull
+    public static File getImportedDatabaseFile(@NonNull Context context) {
+        return context.getDatabasePath(IMPORTED_DATABASE_NAME);
+    }
+
+    private static void applyImportedDatabase(Context context) {
+        final File importedDatabase = getImportedDatabaseFile(context);
+        if (!importedDatabase.exists()) return;
+
+        final File database = context.getDatabasePath(DATABASE_NAME);
+        // Leftover journals of the current database would corrupt the imported one
+        for (final String suffix : JOURNAL_SUFFIXES) {
+            final File journal = new File(database.getPath() + suffix);
+            if (journal.exists() && !journal.delete()) {
+                Log.e(TAG, "Could not delete journal " + journal);
+                return;
+            }
+        }
+        if ((database.exists() && !database.delete()) || !importedDatabase.renameTo(database)) {
+            Log.e(TAG, "Could not replace current database with " + importedDatabase);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package org.schabi.newpipe.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.schabi.newpipe.MainActivity;
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.database.stream.dao.StreamDAO;
+
+import java.io.File;
+import java.util.Locale;
+
+import static org.schabi.newpipe.database.AppDatabase.DATABASE_NAME;
+
+/**
+ * Housekeeping of the app database: removes orphaned streams in short batches,
+ * refreshes the query planner statistics and returns free pages to the file system.
+ * <p>
+ * Every step is bounded and checks for cancellation between batches, so it can be run
+ * from a job that may be stopped at any time. The only exception is the one-time switch to
+ * incremental vacuuming, which is left to {@link #runFullVacuum()}.
+ * */
+public class DatabaseMaintenance {
+    private static final String TAG = DatabaseMaintenance.class.getSimpleName();
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    /** Orphaned streams deleted per transaction, keeping the write lock short for the players. */
+    private static final int ORPHAN_BATCH_SIZE = 500;
+    /** Free pages released per incremental vacuum step. */
+    private static final int VACUUM_BATCH_PAGES = 256;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final Context context;
+    private final AppDatabase database;
+    private final StreamDAO streamTable;
+
+    private volatile boolean isCancelled = false;
+
+    public DatabaseMaintenance(@NonNull final Context context) {
+        this.context = context.getApplicationContext();
+        this.database = NewPipeDatabase.getInstance(context);
+        this.streamTable = database.streamDAO();
+    }
+
+    public static final class Report {
+        public long sizeBeforeBytes;
+        public long sizeAfterBytes;
+        public int orphansDeleted;
+        public long orphanDeletionMillis;
+        public long analyzeMillis;
+        public long vacuumMillis;
+        public boolean isComplete;
+        /** Whether free pages can only be released after {@link #runFullVacuum()}. */
+        public boolean isFullVacuumPending;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "size=[%d -> %d bytes], orphans=[%d in %d ms]," +
+                            " analyze=[%d ms], vacuum=[%d ms], complete=[%b]," +
+                            " full vacuum pending=[%b]",
+                    sizeBeforeBytes, sizeAfterBytes, orphansDeleted, orphanDeletionMillis,
+                    analyzeMillis, vacuumMillis, isComplete, isFullVacuumPending);
+        }
+    }
+
+    /**
+     * Runs all maintenance steps on the calling thread, returning early if {@link #cancel()}
+     * is called in the meantime.
+     * */
+    @NonNull
+    public Report run() {
+        final Report report = new Report();
+        report.sizeBeforeBytes = getDatabaseSize();
+
+        long startTime = System.currentTimeMillis();
+        int deleted;
+        do {
+            deleted = streamTable.deleteOrphans(ORPHAN_BATCH_SIZE);
+            report.orphansDeleted += deleted;
+        } while (deleted >= ORPHAN_BATCH_SIZE && !isCancelled);
+        report.orphanDeletionMillis = System.currentTimeMillis() - startTime;
+        if (isCancelled) return finish(report);
+
+        final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+
+        startTime = System.currentTimeMillis();
+        db.execSQL("ANALYZE");
+        report.analyzeMillis = System.currentTimeMillis() - startTime;
+        if (isCancelled) return finish(report);
+
+        startTime = System.currentTimeMillis();
+        vacuum(db, report);
+        report.vacuumMillis = System.currentTimeMillis() - startTime;
+
+        report.isComplete = !isCancelled;
+        return finish(report);
+    }
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * Switches the database to incremental vacuuming, which only takes effect after a full
+     * vacuum. It rewrites the whole database and cannot be cancelled, so it is only run once,
+     * while the device is both charging and idle.
+     * */
+    public void runFullVacuum() {
+        final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        if (queryInt(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) return;
+
+        final long sizeBefore = getDatabaseSize();
+        final long startTime = System.currentTimeMillis();
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+        if (DEBUG) Log.d(TAG, "Full vacuum took " + (System.currentTimeMillis() - startTime) +
+                " ms, size=[" + sizeBefore + " -> " + getDatabaseSize() + " bytes]");
+    }
+
+    private void vacuum(@NonNull final SupportSQLiteDatabase db, @NonNull final Report report) {
+        if (queryInt(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            report.isFullVacuumPending = true;
+            return;
+        }
+
+        while (!isCancelled && queryInt(db, "PRAGMA freelist_count") > 0) {
+            // Pages are only released while the pragma's result is being stepped through
+            final Cursor cursor = db.query("PRAGMA incremental_vacuum(" + VACUUM_BATCH_PAGES + ")");
+            try {
+                while (cursor.moveToNext()) {
+                    // consume
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static int queryInt(@NonNull final SupportSQLiteDatabase db, @NonNull final String sql) {
+        final Cursor cursor = db.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long getDatabaseSize() {
+        final File databaseFile = context.getDatabasePath(DATABASE_NAME);
+        final File walFile = new File(databaseFile.getPath() + "-wal");
+        return databaseFile.length() + walFile.length();
+    }
+
+    @NonNull
+    private Report finish(@NonNull final Report report) {
+        report.sizeAfterBytes = getDatabaseSize();
+        if (DEBUG) Log.d(TAG, "Database maintenance finished: " + report);
+        return report;
+    }
+}
@@ -0,0 +1,144 @@
+package org.schabi.newpipe.database;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.schabi.newpipe.MainActivity;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Runs {@link DatabaseMaintenance} about once a day, whenever the device is either idle
+ * or charging, whichever comes first. The one-time {@link DatabaseMaintenance#runFullVacuum()
+ * full vacuum} runs from a separate job, only while the device is both idle and charging.
+ * */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class DatabaseMaintenanceService extends JobService {
+    private static final String TAG = DatabaseMaintenanceService.class.getSimpleName();
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final int JOB_ID_ON_IDLE = 0x6d61696e;
+    private static final int JOB_ID_ON_CHARGING = JOB_ID_ON_IDLE + 1;
+    private static final int JOB_ID_FULL_VACUUM = JOB_ID_ON_IDLE + 2;
+
+    private static final long MAINTENANCE_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    /** Both jobs run on the same interval, the later of them skips if the other just ran. */
+    private static final long MINIMUM_MAINTENANCE_GAP_MILLIS = TimeUnit.HOURS.toMillis(20);
+    private static final String LAST_MAINTENANCE_KEY = "last_database_maintenance_time";
+
+    private DatabaseMaintenance maintenance;
+    private Disposable maintenanceDisposable;
+
+    /**
+     * Schedules the maintenance jobs, unless they are already pending.
+     * */
+    public static void schedule(@NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return;
+
+        final JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        boolean isIdleJobPending = false;
+        boolean isChargingJobPending = false;
+        for (final JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID_ON_IDLE) isIdleJobPending = true;
+            if (job.getId() == JOB_ID_ON_CHARGING) isChargingJobPending = true;
+        }
+
+        // Rescheduling a periodic job restarts its period, so pending jobs are left untouched
+        final ComponentName service = new ComponentName(context, DatabaseMaintenanceService.class);
+        if (!isIdleJobPending) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_ON_IDLE, service)
+                    .setPeriodic(MAINTENANCE_INTERVAL_MILLIS)
+                    .setRequiresDeviceIdle(true)
+                    .build());
+        }
+        if (!isChargingJobPending) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_ON_CHARGING, service)
+                    .setPeriodic(MAINTENANCE_INTERVAL_MILLIS)
+                    .setRequiresCharging(true)
+                    .build());
+        }
+    }
+
+    /**
+     * Schedules the full vacuum once, unless it is already pending. The job is not persisted,
+     * as the maintenance schedules it again after a reboot for as long as it is needed.
+     * */
+    private static void scheduleFullVacuum(@NonNull final Context context) {
+        final JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (final JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID_FULL_VACUUM) return;
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID_FULL_VACUUM,
+                new ComponentName(context, DatabaseMaintenanceService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        if (params.getJobId() == JOB_ID_FULL_VACUUM) {
+            maintenance = new DatabaseMaintenance(this);
+            maintenanceDisposable = Completable.fromAction(maintenance::runFullVacuum)
+                    .subscribeOn(Schedulers.io())
+                    .subscribe(() -> jobFinished(params, false), error -> {
+                        Log.e(TAG, "Database full vacuum failed", error);
+                        jobFinished(params, false);
+                    });
+            return true;
+        }
+
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        final long lastMaintenance = preferences.getLong(LAST_MAINTENANCE_KEY, 0);
+        if (System.currentTimeMillis() - lastMaintenance < MINIMUM_MAINTENANCE_GAP_MILLIS) {
+            if (DEBUG) Log.d(TAG, "onStartJob() skipped, last maintenance at " + lastMaintenance);
+            return false;
+        }
+
+        maintenance = new DatabaseMaintenance(this);
+        maintenanceDisposable = Single.fromCallable(maintenance::run)
+                .subscribeOn(Schedulers.io())
+                .subscribe(report -> {
+                    Log.i(TAG, "Database maintenance report: " + report);
+                    if (report.isFullVacuumPending) scheduleFullVacuum(this);
+                    if (report.isComplete) {
+                        preferences.edit()
+                                .putLong(LAST_MAINTENANCE_KEY, System.currentTimeMillis())
+                                .apply();
+                    }
+                    jobFinished(params, !report.isComplete);
+                }, error -> {
+                    Log.e(TAG, "Database maintenance failed", error);
+                    jobFinished(params, false);
+                });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(final JobParameters params) {
+        if (maintenance != null) maintenance.cancel();
+        if (maintenanceDisposable != null) maintenanceDisposable.dispose();
+        return true;
+    }
+}
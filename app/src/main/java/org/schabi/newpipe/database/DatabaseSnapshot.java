@@ -0,0 +1,184 @@
+package org.schabi.newpipe.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.schabi.newpipe.database.AppDatabase.DATABASE_NAME;
+import static org.schabi.newpipe.database.LocalSearchIndex.SEARCH_INDEX_TABLE;
+import static org.schabi.newpipe.database.Migrations.DB_VER_11_0;
+import static org.schabi.newpipe.database.Migrations.DB_VER_12_0;
+
+/**
+ * Creates and validates standalone copies of the app database, for export and import.
+ * <p>
+ * The live database may be written to at any time, so its files cannot simply be copied.
+ * Instead, the snapshot is a new database into which the live one is attached and copied
+ * table by table within a single read transaction, which yields a consistent state without
+ * blocking writers. The full-text index is left out, as it is rebuilt on open.
+ * */
+public final class DatabaseSnapshot {
+
+    private static final String SOURCE_SCHEMA = "source";
+    private static final String SNAPSHOT_SAVEPOINT = "snapshot";
+    private static final String SEQUENCE_TABLE = "sqlite_sequence";
+    /** Created by Android itself when opening the snapshot. */
+    private static final String METADATA_TABLE = "android_metadata";
+
+    private DatabaseSnapshot() {
+        //no instance
+    }
+
+    /**
+     * Copies the current state of the app database into a new database file.
+     *
+     * @throws IOException if the target already exists or the copy fails its integrity check
+     * */
+    public static void create(@NonNull final Context context, @NonNull final File target)
+            throws IOException {
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Could not delete existing snapshot " + target);
+        }
+
+        final File source = context.getDatabasePath(DATABASE_NAME);
+        final SQLiteDatabase snapshot = SQLiteDatabase.openOrCreateDatabase(target, null);
+        boolean isCreated = false;
+        try {
+            snapshot.execSQL("ATTACH DATABASE ? AS " + SOURCE_SCHEMA,
+                    new Object[]{source.getAbsolutePath()});
+            try {
+                copySource(snapshot);
+            } finally {
+                snapshot.execSQL("DETACH DATABASE " + SOURCE_SCHEMA);
+            }
+
+            if (!isIntact(snapshot)) {
+                throw new IOException("Snapshot failed the integrity check");
+            }
+            isCreated = true;
+        } finally {
+            snapshot.close();
+            // A failed copy is committed partially, as it cannot be rolled back, see copySource
+            //noinspection ResultOfMethodCallIgnored
+            if (!isCreated) target.delete();
+        }
+    }
+
+    /**
+     * Checks if a database file is intact and has a schema version this app can open,
+     * either directly or through a migration.
+     * */
+    public static boolean isValid(@NonNull final File database) {
+        final SQLiteDatabase snapshot;
+        try {
+            snapshot = SQLiteDatabase.openDatabase(database.getAbsolutePath(), null,
+                    SQLiteDatabase.OPEN_READONLY);
+        } catch (Exception e) {
+            return false;
+        }
+
+        try {
+            final int version = snapshot.getVersion();
+            return version >= DB_VER_11_0 && version <= DB_VER_12_0 && isIntact(snapshot);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Copies the attached source within a deferred transaction, which only takes a read lock
+     * on the source, so the live database stays writable during the copy.
+     * <br><br>
+     * Android runs {@code BEGIN} statements and its own transactions as exclusive ones, which
+     * would take the write lock of every attached database. A savepoint outside of a
+     * transaction is deferred instead, but as Android also intercepts {@code ROLLBACK}
+     * statements, it is always released, leaving the caller to discard a failed copy.
+     * */
+    private static void copySource(@NonNull final SQLiteDatabase snapshot) {
+        snapshot.execSQL("SAVEPOINT " + SNAPSHOT_SAVEPOINT);
+        try {
+            final List<String> tables = new ArrayList<>();
+            final List<String> indicesAndTriggers = new ArrayList<>();
+
+            // Reading the schema starts the read transaction on the source,
+            // every statement below then sees the same state of it
+            final Cursor schema = snapshot.rawQuery("SELECT type, name, sql FROM " +
+                    SOURCE_SCHEMA + ".sqlite_master WHERE sql IS NOT NULL", null);
+            try {
+                while (schema.moveToNext()) {
+                    final String type = schema.getString(0);
+                    final String name = schema.getString(1);
+                    final String sql = schema.getString(2);
+                    if (name.startsWith("sqlite_") || name.equals(METADATA_TABLE) ||
+                            name.startsWith(SEARCH_INDEX_TABLE)) {
+                        continue;
+                    }
+
+                    if (type.equals("table")) {
+                        snapshot.execSQL(sql);
+                        tables.add(name);
+                    } else {
+                        indicesAndTriggers.add(sql);
+                    }
+                }
+            } finally {
+                schema.close();
+            }
+
+            for (final String table : tables) {
+                snapshot.execSQL("INSERT INTO main.`" + table + "` SELECT * FROM " +
+                        SOURCE_SCHEMA + ".`" + table + "`");
+            }
+            if (hasTable(snapshot, SEQUENCE_TABLE)) {
+                snapshot.execSQL("INSERT INTO main." + SEQUENCE_TABLE + " SELECT * FROM " +
+                        SOURCE_SCHEMA + "." + SEQUENCE_TABLE);
+            }
+
+            // Building indices once after copying is faster than updating them on every row
+            for (final String sql : indicesAndTriggers) {
+                snapshot.execSQL(sql);
+            }
+
+            snapshot.setVersion(getSourceVersion(snapshot));
+        } finally {
+            snapshot.execSQL("RELEASE " + SNAPSHOT_SAVEPOINT);
+        }
+    }
+
+    private static int getSourceVersion(@NonNull final SQLiteDatabase snapshot) {
+        final Cursor cursor = snapshot.rawQuery("PRAGMA " + SOURCE_SCHEMA + ".user_version", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean hasTable(@NonNull final SQLiteDatabase database,
+                                    @NonNull final String table) {
+        final Cursor cursor = database.rawQuery("SELECT 1 FROM main.sqlite_master" +
+                " WHERE type = 'table' AND name = ?", new String[]{table});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean isIntact(@NonNull final SQLiteDatabase database) {
+        final Cursor cursor = database.rawQuery("PRAGMA quick_check", null);
+        try {
+            return cursor.moveToFirst() && "ok".equalsIgnoreCase(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+}
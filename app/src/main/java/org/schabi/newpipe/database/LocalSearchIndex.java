@@ -0,0 +1,134 @@
+package org.schabi.newpipe.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+/**
+ * Full-text index over the titles of all locally stored items.
+ * <p>
+ * Room has no support for virtual tables, so the index table and the triggers keeping it in sync
+ * with the source tables are maintained here instead of in {@link AppDatabase}. Since the index
+ * only holds data derived from other tables, it is rebuilt whenever its triggers are missing,
+ * e.g. after a destructive migration, instead of being versioned with the schema.
+ * <p>
+ * Each row is keyed by a docid combining the uid of the source row with its {@code TYPE_*},
+ * see {@link #docIdOf(int, long)}, so triggers can update the index without scanning it.
+ * */
+public final class LocalSearchIndex {
+
+    public static final String SEARCH_INDEX_TABLE = "local_search_index";
+    public static final String SEARCH_INDEX_DOC_ID = "docid";
+    public static final String SEARCH_INDEX_TITLE = "title";
+    public static final String SEARCH_INDEX_SUBTITLE = "subtitle";
+
+    public static final int TYPE_STREAM = 0;
+    public static final int TYPE_SUBSCRIPTION = 1;
+    public static final int TYPE_PLAYLIST = 2;
+    public static final int TYPE_REMOTE_PLAYLIST = 3;
+    public static final int TYPE_SEARCH_HISTORY = 4;
+    public static final int TYPE_SPACE = 8;
+
+    private static final String TRIGGER_PREFIX = SEARCH_INDEX_TABLE + "_";
+
+    /** Source table, primary key, title and subtitle columns for each type, in type order. */
+    private static final String[][] SOURCES = {
+            {"streams", "uid", "title", "uploader"},
+            {"subscriptions", "uid", "name", "NULL"},
+            {"playlists", "uid", "name", "NULL"},
+            {"remote_playlists", "uid", "name", "uploader"},
+            {"search_history", "id", "search", "NULL"}
+    };
+
+    private LocalSearchIndex() {
+        //no instance
+    }
+
+    public static long docIdOf(final int type, final long uid) {
+        return uid * TYPE_SPACE + type;
+    }
+
+    public static int typeOf(final long docId) {
+        return (int) (docId & (TYPE_SPACE - 1));
+    }
+
+    public static long uidOf(final long docId) {
+        return docId / TYPE_SPACE;
+    }
+
+    /**
+     * Creates and populates the index if it or any of its triggers are missing.
+     * */
+    public static void ensureCreated(@NonNull final SupportSQLiteDatabase database) {
+        if (countTriggers(database) == SOURCES.length * 3) return;
+
+        database.beginTransaction();
+        try {
+            database.execSQL("DROP TABLE IF EXISTS `" + SEARCH_INDEX_TABLE + "`");
+            database.execSQL("CREATE VIRTUAL TABLE `" + SEARCH_INDEX_TABLE + "` USING fts4(`" +
+                    SEARCH_INDEX_TITLE + "`, `" + SEARCH_INDEX_SUBTITLE + "`)");
+
+            for (int type = 0; type < SOURCES.length; type++) {
+                createTriggers(database, type, SOURCES[type]);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static int countTriggers(@NonNull final SupportSQLiteDatabase database) {
+        final Cursor cursor = database.query("SELECT COUNT(*) FROM sqlite_master" +
+                " WHERE type = 'trigger' AND name LIKE ?", new Object[]{TRIGGER_PREFIX + "%"});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void createTriggers(@NonNull final SupportSQLiteDatabase database,
+                                       final int type, @NonNull final String[] source) {
+        final String table = source[0];
+        final String uid = source[1];
+        final String title = source[2];
+        final String subtitle = source[3];
+
+        final String docId = uid + " * " + TYPE_SPACE + " + " + type;
+        final String insert = "INSERT INTO `" + SEARCH_INDEX_TABLE + "` (" + SEARCH_INDEX_DOC_ID +
+                ", " + SEARCH_INDEX_TITLE + ", " + SEARCH_INDEX_SUBTITLE + ") ";
+        final String delete = "DELETE FROM `" + SEARCH_INDEX_TABLE + "` WHERE " +
+                SEARCH_INDEX_DOC_ID + " = old." + docId + "; ";
+        final String prefix = TRIGGER_PREFIX + table;
+
+        for (final String event : new String[]{"insert", "update", "delete"}) {
+            database.execSQL("DROP TRIGGER IF EXISTS `" + prefix + "_" + event + "`");
+        }
+
+        database.execSQL(insert + "SELECT " + docId + ", " + title + ", " + subtitle +
+                " FROM `" + table + "`");
+
+        database.execSQL("CREATE TRIGGER `" + prefix + "_insert` AFTER INSERT ON `" + table +
+                "` BEGIN " + insert + "VALUES (new." + docId + ", new." + title + ", " +
+                newValueOf(subtitle) + "); END");
+
+        // Streams are upserted on every playback, only reindex when the text actually changed
+        database.execSQL("CREATE TRIGGER `" + prefix + "_update` AFTER UPDATE ON `" + table +
+                "` WHEN old." + uid + " IS NOT new." + uid +
+                " OR old." + title + " IS NOT new." + title +
+                " OR " + oldValueOf(subtitle) + " IS NOT " + newValueOf(subtitle) +
+                " BEGIN " + delete + insert + "VALUES (new." + docId + ", new." + title + ", " +
+                newValueOf(subtitle) + "); END");
+
+        database.execSQL("CREATE TRIGGER `" + prefix + "_delete` AFTER DELETE ON `" + table +
+                "` BEGIN " + delete + "END");
+    }
+
+    private static String newValueOf(@NonNull final String column) {
+        return column.equals("NULL") ? column : "new." + column;
+    }
+
+    private static String oldValueOf(@NonNull final String column) {
+        return column.equals("NULL") ? column : "old." + column;
+    }
+}
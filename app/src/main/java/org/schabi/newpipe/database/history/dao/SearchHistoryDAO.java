@@ -7,6 +7,7 @@ import android.support.annotation.Nullable;
 import org.schabi.newpipe.database.BasicDAO;
 import org.schabi.newpipe.database.history.model.SearchHistoryEntry;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Flowable;
@@ -45,6 +46,13 @@ public interface SearchHistoryDAO extends HistoryDAO<SearchHistoryEntry> {
     @Override
     Flowable<List<SearchHistoryEntry>> listByService(int serviceId);
 
-    @Query("SELECT * FROM " + TABLE_NAME + " WHERE " + SEARCH + " LIKE :query || '%' GROUP BY " + SEARCH + " LIMIT :limit")
-    Flowable<List<SearchHistoryEntry>> getSimilarEntries(String query, int limit);
+    /**
+     * Emits again whenever the search history changes, to re-run queries on it Room
+     * cannot observe, such as those on the full-text index.
+     * */
+    @Query("SELECT COUNT(*) FROM " + TABLE_NAME)
+    Flowable<Integer> getEntryCount();
+
+    @Query("SELECT * FROM " + TABLE_NAME + " WHERE " + ID + " IN (:ids)")
+    List<SearchHistoryEntry> getEntries(Collection<Long> ids);
 }
@@ -7,6 +7,7 @@ import android.arch.persistence.room.Transaction;
 import org.schabi.newpipe.database.BasicDAO;
 import org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Flowable;
@@ -36,6 +37,10 @@ public abstract class PlaylistRemoteDAO implements BasicDAO<PlaylistRemoteEntity
             REMOTE_PLAYLIST_SERVICE_ID + " = :serviceId")
     public abstract Flowable<List<PlaylistRemoteEntity>> getPlaylist(long serviceId, String url);
 
+    @Query("SELECT * FROM " + REMOTE_PLAYLIST_TABLE +
+            " WHERE " + REMOTE_PLAYLIST_ID + " IN (:playlistIds)")
+    public abstract List<PlaylistRemoteEntity> getPlaylists(final Collection<Long> playlistIds);
+
     @Query("SELECT " + REMOTE_PLAYLIST_ID + " FROM " + REMOTE_PLAYLIST_TABLE +
             " WHERE " +
             REMOTE_PLAYLIST_URL + " = :url AND " + REMOTE_PLAYLIST_SERVICE_ID + " = :serviceId")
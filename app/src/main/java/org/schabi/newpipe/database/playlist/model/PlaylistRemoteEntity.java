@@ -9,6 +9,7 @@ import android.arch.persistence.room.PrimaryKey;
 import org.schabi.newpipe.database.LocalItem;
 import org.schabi.newpipe.database.playlist.PlaylistLocalItem;
 import org.schabi.newpipe.extractor.playlist.PlaylistInfo;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfoItem;
 import org.schabi.newpipe.util.Constants;
 
 import static org.schabi.newpipe.database.LocalItem.LocalItemType.PLAYLIST_REMOTE_ITEM;
@@ -71,6 +72,15 @@ public class PlaylistRemoteEntity implements PlaylistLocalItem {
                 info.getUploaderName(), info.getStreamCount());
     }
 
+    @Ignore
+    public PlaylistInfoItem toPlaylistInfoItem() {
+        PlaylistInfoItem item = new PlaylistInfoItem(getServiceId(), getUrl(), getName());
+        item.setThumbnailUrl(getThumbnailUrl());
+        item.setUploaderName(getUploader());
+        if (getStreamCount() != null) item.setStreamCount(getStreamCount());
+        return item;
+    }
+
     public long getUid() {
         return uid;
     }
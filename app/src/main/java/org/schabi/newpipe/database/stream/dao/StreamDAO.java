@@ -13,6 +13,7 @@ import org.schabi.newpipe.database.history.model.StreamHistoryEntity;
 import org.schabi.newpipe.database.stream.model.StreamStateEntity;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Flowable;
@@ -27,6 +28,16 @@ import static org.schabi.newpipe.database.stream.model.StreamStateEntity.STREAM_
 
 @Dao
 public abstract class StreamDAO implements BasicDAO<StreamEntity> {
+    /* Streams neither in the watch history nor in any local playlist */
+    private static final String ORPHAN_STREAM_CONDITION =
+            " NOT EXISTS (SELECT 1 FROM " + STREAM_HISTORY_TABLE +
+            " WHERE " + STREAM_HISTORY_TABLE + "." + StreamHistoryEntity.JOIN_STREAM_ID +
+            " = " + STREAM_TABLE + "." + STREAM_ID + ")" +
+
+            " AND NOT EXISTS (SELECT 1 FROM " + PLAYLIST_STREAM_JOIN_TABLE +
+            " WHERE " + PLAYLIST_STREAM_JOIN_TABLE + "." + PlaylistStreamEntity.JOIN_STREAM_ID +
+            " = " + STREAM_TABLE + "." + STREAM_ID + ")";
+
     @Override
     @Query("SELECT * FROM " + STREAM_TABLE)
     public abstract Flowable<List<StreamEntity>> getAll();
@@ -44,6 +55,9 @@ public abstract class StreamDAO implements BasicDAO<StreamEntity> {
             STREAM_SERVICE_ID + " = :serviceId")
     public abstract Flowable<List<StreamEntity>> getStream(long serviceId, String url);
 
+    @Query("SELECT * FROM " + STREAM_TABLE + " WHERE " + STREAM_ID + " IN (:streamIds)")
+    public abstract List<StreamEntity> getStreams(final Collection<Long> streamIds);
+
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     abstract void silentInsertAllInternal(final List<StreamEntity> streams);
 
@@ -84,17 +98,15 @@ public abstract class StreamDAO implements BasicDAO<StreamEntity> {
         return streamIds;
     }
 
-    @Query("DELETE FROM " + STREAM_TABLE + " WHERE " + STREAM_ID +
-            " NOT IN " +
-            "(SELECT DISTINCT " + STREAM_ID + " FROM " + STREAM_TABLE +
-
-            " LEFT JOIN " + STREAM_HISTORY_TABLE +
-            " ON " + STREAM_ID + " = " +
-            StreamHistoryEntity.STREAM_HISTORY_TABLE + "." + StreamHistoryEntity.JOIN_STREAM_ID +
-
-            " LEFT JOIN " + PLAYLIST_STREAM_JOIN_TABLE +
-            " ON " + STREAM_ID + " = " +
-            PlaylistStreamEntity.PLAYLIST_STREAM_JOIN_TABLE + "." + PlaylistStreamEntity.JOIN_STREAM_ID +
-            ")")
+    @Query("DELETE FROM " + STREAM_TABLE + " WHERE" + ORPHAN_STREAM_CONDITION)
     public abstract int deleteOrphans();
+
+    /**
+     * Deletes at most the given amount of orphaned streams, so the deletion can be
+     * spread over several short transactions.
+     * */
+    @Query("DELETE FROM " + STREAM_TABLE + " WHERE " + STREAM_ID + " IN " +
+            "(SELECT " + STREAM_ID + " FROM " + STREAM_TABLE +
+            " WHERE" + ORPHAN_STREAM_CONDITION + " LIMIT :limit)")
+    public abstract int deleteOrphans(final int limit);
 }
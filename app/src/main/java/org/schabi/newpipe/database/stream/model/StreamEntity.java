@@ -87,6 +87,15 @@ public class StreamEntity implements Serializable {
                 item.getThumbnailUrl(), item.getUploader(), item.getDuration());
     }
 
+    @Ignore
+    public StreamInfoItem toStreamInfoItem() throws IllegalArgumentException {
+        StreamInfoItem item = new StreamInfoItem(getServiceId(), getUrl(), getTitle(), getStreamType());
+        item.setThumbnailUrl(getThumbnailUrl());
+        item.setUploaderName(getUploader());
+        if (getDuration() != null) item.setDuration(getDuration());
+        return item;
+    }
+
     public long getUid() {
         return uid;
     }
@@ -8,6 +8,7 @@ import android.arch.persistence.room.Transaction;
 
 import org.schabi.newpipe.database.BasicDAO;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Flowable;
@@ -32,13 +33,17 @@ public abstract class SubscriptionDAO implements BasicDAO<SubscriptionEntity> {
     public abstract Flowable<List<SubscriptionEntity>> listByService(int serviceId);
 
     @Query("SELECT * FROM " + SUBSCRIPTION_TABLE + " WHERE " +
-            SUBSCRIPTION_URL + " LIKE :url AND " +
-            SUBSCRIPTION_SERVICE_ID + " = :serviceId")
+            SUBSCRIPTION_SERVICE_ID + " = :serviceId AND " +
+            SUBSCRIPTION_URL + " = :url")
     public abstract Flowable<List<SubscriptionEntity>> getSubscription(int serviceId, String url);
 
+    @Query("SELECT * FROM " + SUBSCRIPTION_TABLE + " WHERE " +
+            SUBSCRIPTION_UID + " IN (:subscriptionIds)")
+    public abstract List<SubscriptionEntity> getSubscriptions(final Collection<Long> subscriptionIds);
+
     @Query("SELECT " + SUBSCRIPTION_UID + " FROM " + SUBSCRIPTION_TABLE + " WHERE " +
-            SUBSCRIPTION_URL + " LIKE :url AND " +
-            SUBSCRIPTION_SERVICE_ID + " = :serviceId")
+            SUBSCRIPTION_SERVICE_ID + " = :serviceId AND " +
+            SUBSCRIPTION_URL + " = :url")
     abstract Long getSubscriptionIdInternal(int serviceId, String url);
 
     @Insert(onConflict = OnConflictStrategy.IGNORE)
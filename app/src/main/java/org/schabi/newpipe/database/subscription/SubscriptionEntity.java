@@ -20,7 +20,7 @@ import static org.schabi.newpipe.database.subscription.SubscriptionEntity.SUBSCR
 public class SubscriptionEntity {
 
     final static String SUBSCRIPTION_UID                = "uid";
-    final static String SUBSCRIPTION_TABLE              = "subscriptions";
+    public final static String SUBSCRIPTION_TABLE       = "subscriptions";
     final static String SUBSCRIPTION_SERVICE_ID         = "service_id";
     final static String SUBSCRIPTION_URL                = "url";
     final static String SUBSCRIPTION_NAME               = "name";
@@ -258,6 +258,11 @@ public class ChannelFragment extends BaseListInfoFragment<ChannelInfo> {
             }
         };
 
+        // Resolve the button state from memory first, the database lookup below only
+        // provides the subscription entity needed for the button action
+        final Boolean isSubscribed = subscriptionService.isSubscribed(info.getServiceId(), info.getUrl());
+        if (isSubscribed != null) updateSubscribeButton(isSubscribed);
+
         final Observable<List<SubscriptionEntity>> observable = subscriptionService.subscriptionTable()
                 .getSubscription(info.getServiceId(), info.getUrl())
                 .toObservable();
@@ -27,6 +27,7 @@ import android.view.animation.DecelerateInterpolator;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import org.schabi.newpipe.R;
@@ -42,6 +43,7 @@ import org.schabi.newpipe.extractor.search.SearchResult;
 import org.schabi.newpipe.fragments.BackPressable;
 import org.schabi.newpipe.fragments.list.BaseListFragment;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
+import org.schabi.newpipe.local.search.LocalSearchEngine;
 import org.schabi.newpipe.report.UserAction;
 import org.schabi.newpipe.util.Constants;
 import org.schabi.newpipe.util.AnimationUtils;
@@ -53,6 +55,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
@@ -62,6 +65,7 @@ import java.util.concurrent.TimeUnit;
 import icepick.State;
 import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
@@ -90,6 +94,11 @@ public class SearchFragment
      */
     private static final int SUGGESTIONS_DEBOUNCE = 120; //ms
 
+    /**
+     * How many matching items from the local library are shown above the remote search results.
+     */
+    private static final int LOCAL_RESULTS_LIMIT = 5;
+
     @State
     protected int filterItemCheckedId = -1;
     private SearchEngine.Filter filter = SearchEngine.Filter.ANY;
@@ -116,6 +125,8 @@ public class SearchFragment
 
     private SuggestionListAdapter suggestionListAdapter;
     private HistoryRecordManager historyRecordManager;
+    private LocalSearchEngine localSearchEngine;
+    private List<InfoItem> localSearchResults = Collections.emptyList();
 
     /*//////////////////////////////////////////////////////////////////////////
     // Views
@@ -128,6 +139,9 @@ public class SearchFragment
     private View suggestionsPanel;
     private RecyclerView suggestionsRecyclerView;
 
+    private View localResultsRoot;
+    private LinearLayout localResultsView;
+
     /*////////////////////////////////////////////////////////////////////////*/
 
     public static SearchFragment getInstance(int serviceId, String query) {
@@ -162,6 +176,7 @@ public class SearchFragment
         suggestionListAdapter.setShowSuggestionHistory(isSearchHistoryEnabled);
 
         historyRecordManager = new HistoryRecordManager(context);
+        localSearchEngine = new LocalSearchEngine(context);
     }
 
     @Override
@@ -273,6 +288,16 @@ public class SearchFragment
         searchToolbarContainer = activity.findViewById(R.id.toolbar_search_container);
         searchEditText = searchToolbarContainer.findViewById(R.id.toolbar_search_edit_text);
         searchClear = searchToolbarContainer.findViewById(R.id.toolbar_search_clear);
+
+        showLocalResults(localSearchResults);
+    }
+
+    @Override
+    protected View getListHeader() {
+        localResultsRoot = activity.getLayoutInflater()
+                .inflate(R.layout.search_local_results_header, itemsList, false);
+        localResultsView = localResultsRoot.findViewById(R.id.search_local_results);
+        return localResultsRoot;
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -284,13 +309,16 @@ public class SearchFragment
         super.writeTo(objectsToSave);
         objectsToSave.add(currentPage);
         objectsToSave.add(currentNextPage);
+        objectsToSave.add(new ArrayList<>(localSearchResults));
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void readFrom(@NonNull Queue<Object> savedObjects) throws Exception {
         super.readFrom(savedObjects);
         currentPage = (int) savedObjects.poll();
         currentNextPage = (int) savedObjects.poll();
+        localSearchResults = (List<InfoItem>) savedObjects.poll();
     }
 
     @Override
@@ -604,7 +632,8 @@ public class SearchFragment
                                 return result;
                             });
 
-                    return Observable.zip(local, network, (localResult, networkResult) -> {
+                    // Local suggestions keep updating as the search history changes
+                    return Observable.combineLatest(local, network, (localResult, networkResult) -> {
                         List<SuggestionItem> result = new ArrayList<>();
                         if (localResult.size() > 0) result.addAll(localResult);
 
@@ -684,6 +713,8 @@ public class SearchFragment
         searchQuery = query;
         currentPage = 0;
         infoListAdapter.clearStreamItemList();
+        localSearchResults = Collections.emptyList();
+        showLocalResults(localSearchResults);
         hideSuggestionsPanel();
         hideKeyboardSearch();
 
@@ -703,8 +734,19 @@ public class SearchFragment
         super.startLoading(forceLoad);
         if (disposables != null) disposables.clear();
         if (searchDisposable != null) searchDisposable.dispose();
-        searchDisposable = ExtractorHelper.searchFor(serviceId, searchQuery, currentPage, contentCountry, filter)
-                .subscribeOn(Schedulers.io())
+
+        // The local library answers well before the network, so waiting for it costs nothing
+        final Single<List<InfoItem>> localSearch = filter != SearchEngine.Filter.ANY
+                ? Single.just(Collections.<InfoItem>emptyList())
+                : localSearchEngine.searchInfoItems(searchQuery, LOCAL_RESULTS_LIMIT)
+                        .onErrorReturnItem(Collections.emptyList());
+        searchDisposable = Single.zip(localSearch,
+                ExtractorHelper.searchFor(serviceId, searchQuery, currentPage, contentCountry, filter)
+                        .subscribeOn(Schedulers.io()),
+                (localResults, searchResult) -> {
+                    localSearchResults = localResults;
+                    return searchResult;
+                })
                 .observeOn(AndroidSchedulers.mainThread())
                 .doOnEvent((searchResult, throwable) -> isLoading.set(false))
                 .subscribe(this::handleResult, this::onError);
@@ -806,7 +848,8 @@ public class SearchFragment
         lastSearchedQuery = searchQuery;
 
         if (infoListAdapter.getItemsList().size() == 0) {
-            if (!result.getResults().isEmpty()) {
+            showLocalResults(localSearchResults);
+            if (!localSearchResults.isEmpty() || !result.getResults().isEmpty()) {
                 infoListAdapter.addInfoItemList(result.getResults());
             } else {
                 infoListAdapter.clearStreamItemList();
@@ -818,6 +861,21 @@ public class SearchFragment
         super.handleResult(result);
     }
 
+    /**
+     * Shows the matches from the local library in the list header, set apart from the remote
+     * results below them.
+     * */
+    private void showLocalResults(@NonNull final List<InfoItem> items) {
+        if (localResultsView == null) return;
+
+        localResultsView.removeAllViews();
+        for (final InfoItem item : items) {
+            localResultsView.addView(infoListAdapter.getItemBuilder()
+                    .buildView(localResultsView, item));
+        }
+        localResultsRoot.setVisibility(items.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
     @Override
     public void handleNextItems(ListExtractor.InfoItemsPage result) {
         showListFooter(false);
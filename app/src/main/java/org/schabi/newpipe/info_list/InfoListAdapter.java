@@ -90,6 +90,10 @@ public class InfoListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         infoItemBuilder.setOnPlaylistSelectedListener(listener);
     }
 
+    public InfoItemBuilder getItemBuilder() {
+        return infoItemBuilder;
+    }
+
     public void useMiniItemVariants(boolean useMiniVariant) {
         this.useMiniVariant = useMiniVariant;
     }
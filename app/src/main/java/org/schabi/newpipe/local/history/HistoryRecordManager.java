@@ -20,8 +20,12 @@ package org.schabi.newpipe.local.history;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.schabi.newpipe.MainActivity;
 
 import org.schabi.newpipe.NewPipeDatabase;
 import org.schabi.newpipe.R;
@@ -37,35 +41,59 @@ import org.schabi.newpipe.database.stream.dao.StreamStateDAO;
 import org.schabi.newpipe.database.stream.model.StreamEntity;
 import org.schabi.newpipe.database.stream.model.StreamStateEntity;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.local.search.LocalSearchEngine;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Flowable;
 import io.reactivex.Maybe;
-import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 
 public class HistoryRecordManager {
+    private static final String TAG = HistoryRecordManager.class.getSimpleName();
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    /** Time the first of a batch of history and playback state writes waits for others. */
+    private static final long WRITE_BEHIND_DELAY_MILLIS = 5000;
+    private static final long FLUSH_TIMEOUT_MILLIS = 2000;
+
+    /** Flushes still committing after their managers went away, across all managers. */
+    private static final Object flushLock = new Object();
+    private static int runningFlushes = 0;
 
     private final AppDatabase database;
     private final StreamDAO streamTable;
     private final StreamHistoryDAO streamHistoryTable;
     private final SearchHistoryDAO searchHistoryTable;
     private final StreamStateDAO streamStateTable;
+    private final LocalSearchEngine localSearchEngine;
     private final SharedPreferences sharedPreferences;
     private final String searchHistoryKey;
     private final String streamHistoryKey;
 
+    private final Object pendingLock = new Object();
+    private final Object commitLock = new Object();
+    /** Streams of the pending writes by service id and url, in the order they were queued. */
+    private Map<String, StreamEntity> pendingStreams = new LinkedHashMap<>();
+    private List<PendingView> pendingViews = new ArrayList<>();
+    private Map<String, Long> pendingStates = new HashMap<>();
+    private boolean isCommitScheduled = false;
+
     public HistoryRecordManager(final Context context) {
         database = NewPipeDatabase.getInstance(context);
         streamTable = database.streamDAO();
         streamHistoryTable = database.streamHistoryDAO();
         searchHistoryTable = database.searchHistoryDAO();
         streamStateTable = database.streamStateDAO();
+        localSearchEngine = new LocalSearchEngine(context);
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         searchHistoryKey = context.getString(R.string.enable_search_history_key);
         streamHistoryKey = context.getString(R.string.enable_watch_history_key);
@@ -75,23 +103,30 @@ public class HistoryRecordManager {
     // Watch History
     ///////////////////////////////////////////////////////
 
-    public Maybe<Long> onViewed(final StreamInfo info) {
-        if (!isStreamHistoryEnabled()) return Maybe.empty();
+    /**
+     * Queues a view of the stream, to be added to the watch history with the next batch
+     * of pending writes.
+     * */
+    public void onViewed(final StreamInfo info) {
+        if (!isStreamHistoryEnabled()) return;
 
         final Date currentTime = new Date();
-        return Maybe.fromCallable(() -> database.runInTransaction(() -> {
-            final long streamId = streamTable.upsert(new StreamEntity(info));
-            StreamHistoryEntity latestEntry = streamHistoryTable.getLatestEntry();
-
-            if (latestEntry != null && latestEntry.getStreamUid() == streamId) {
-                streamHistoryTable.delete(latestEntry);
-                latestEntry.setAccessDate(currentTime);
-                latestEntry.setRepeatCount(latestEntry.getRepeatCount() + 1);
-                return streamHistoryTable.insert(latestEntry);
-            } else {
-                return streamHistoryTable.insert(new StreamHistoryEntity(streamId, currentTime));
-            }
-        })).subscribeOn(Schedulers.io());
+        synchronized (pendingLock) {
+            pendingViews.add(new PendingView(queueStream(info), currentTime));
+            scheduleCommit();
+        }
+    }
+
+    private void insertView(final long streamId, final Date accessDate) {
+        final StreamHistoryEntity latestEntry = streamHistoryTable.getLatestEntry();
+        if (latestEntry != null && latestEntry.getStreamUid() == streamId) {
+            streamHistoryTable.delete(latestEntry);
+            latestEntry.setAccessDate(accessDate);
+            latestEntry.setRepeatCount(latestEntry.getRepeatCount() + 1);
+            streamHistoryTable.insert(latestEntry);
+        } else {
+            streamHistoryTable.insert(new StreamHistoryEntity(streamId, accessDate));
+        }
     }
 
     public Single<Integer> deleteStreamHistory(final long streamId) {
@@ -168,9 +203,11 @@ public class HistoryRecordManager {
     public Flowable<List<SearchHistoryEntry>> getRelatedSearches(final String query,
                                                                  final int similarQueryLimit,
                                                                  final int uniqueQueryLimit) {
-        return query.length() > 0
-                ? searchHistoryTable.getSimilarEntries(query, similarQueryLimit)
-                : searchHistoryTable.getUniqueEntries(uniqueQueryLimit);
+        if (query.length() == 0) return searchHistoryTable.getUniqueEntries(uniqueQueryLimit);
+
+        // The index is updated along with the history, so it is searched again on every change
+        return searchHistoryTable.getEntryCount().switchMap(ignored -> localSearchEngine
+                .getSimilarSearches(query, similarQueryLimit).toFlowable());
     }
 
     private boolean isSearchHistoryEnabled() {
@@ -189,11 +226,143 @@ public class HistoryRecordManager {
                 .subscribeOn(Schedulers.io());
     }
 
-    public Maybe<Long> saveStreamState(@NonNull final StreamInfo info, final long progressTime) {
-        return Maybe.fromCallable(() -> database.runInTransaction(() -> {
-            final long streamId = streamTable.upsert(new StreamEntity(info));
-            return streamStateTable.upsert(new StreamStateEntity(streamId, progressTime));
-        })).subscribeOn(Schedulers.io());
+    /**
+     * Queues the playback position of the stream, replacing any position queued before for it.
+     * */
+    public void saveStreamState(@NonNull final StreamInfo info, final long progressTime) {
+        synchronized (pendingLock) {
+            pendingStates.put(queueStream(info), progressTime);
+            scheduleCommit();
+        }
+    }
+
+    ///////////////////////////////////////////////////////
+    // Write Behind
+    ///////////////////////////////////////////////////////
+
+    /**
+     * Commits all pending writes in the background, without waiting for the write behind delay.
+     * Should be called before the player goes away, so no queued state is lost. The commit
+     * finishes after that, as the manager only holds on to the application context.
+     * */
+    public void flushPendingWrites() {
+        synchronized (flushLock) {
+            runningFlushes++;
+        }
+        Schedulers.io().scheduleDirect(() -> {
+            try {
+                commitPendingWrites();
+            } finally {
+                synchronized (flushLock) {
+                    runningFlushes--;
+                    flushLock.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Commits all pending writes like {@link #flushPendingWrites()}, then waits a short while
+     * at most for them to finish. Should be called when the player is torn down along with its
+     * service, as the process may be killed right after, losing writes still running.
+     * */
+    public void flushPendingWritesBlocking() {
+        flushPendingWrites();
+        awaitFlushedWrites();
+    }
+
+    /**
+     * Waits a short while at most for the flushes of all managers to finish. Should only be
+     * called right before the process exits, which would otherwise lose their writes.
+     * */
+    public static void awaitFlushedWrites() {
+        final long deadline = SystemClock.elapsedRealtime() + FLUSH_TIMEOUT_MILLIS;
+        synchronized (flushLock) {
+            while (runningFlushes > 0) {
+                final long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) {
+                    Log.w(TAG, "awaitFlushedWrites() timed out with " + runningFlushes +
+                            " flushes running");
+                    return;
+                }
+                try {
+                    flushLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private String queueStream(@NonNull final StreamInfo info) {
+        final String key = info.getServiceId() + ":" + info.getUrl();
+        pendingStreams.put(key, new StreamEntity(info));
+        return key;
+    }
+
+    private void scheduleCommit() {
+        if (isCommitScheduled) return;
+        isCommitScheduled = true;
+        Schedulers.io().scheduleDirect(() -> {
+            synchronized (pendingLock) {
+                isCommitScheduled = false;
+            }
+            commitPendingWrites();
+        }, WRITE_BEHIND_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all queued streams, views and playback positions in a single transaction,
+     * upserting every stream only once however often it was queued.
+     * */
+    private void commitPendingWrites() {
+        // Keeps concurrent commits in the order their writes were queued
+        synchronized (commitLock) {
+            final Map<String, StreamEntity> streams;
+            final List<PendingView> views;
+            final Map<String, Long> states;
+            synchronized (pendingLock) {
+                if (pendingStreams.isEmpty()) return;
+                streams = pendingStreams;
+                views = pendingViews;
+                states = pendingStates;
+                pendingStreams = new LinkedHashMap<>();
+                pendingViews = new ArrayList<>();
+                pendingStates = new HashMap<>();
+            }
+
+            try {
+                database.runInTransaction(() -> {
+                    final Map<String, Long> streamIds = new HashMap<>(streams.size());
+                    for (final Map.Entry<String, StreamEntity> stream : streams.entrySet()) {
+                        streamIds.put(stream.getKey(), streamTable.upsert(stream.getValue()));
+                    }
+                    for (final PendingView view : views) {
+                        insertView(streamIds.get(view.streamKey), view.accessDate);
+                    }
+                    for (final Map.Entry<String, Long> state : states.entrySet()) {
+                        streamStateTable.upsert(new StreamStateEntity(
+                                streamIds.get(state.getKey()), state.getValue()));
+                    }
+                });
+                if (DEBUG) Log.d(TAG, "commitPendingWrites() committed " + streams.size() +
+                        " streams, " + views.size() + " views and " + states.size() + " states");
+            } catch (Exception e) {
+                Log.e(TAG, "commitPendingWrites() failure: ", e);
+            }
+        }
+    }
+
+    private static final class PendingView {
+        final String streamKey;
+        final Date accessDate;
+
+        PendingView(final String streamKey, final Date accessDate) {
+            this.streamKey = streamKey;
+            this.accessDate = accessDate;
+        }
     }
 
     ///////////////////////////////////////////////////////
@@ -25,6 +25,7 @@ import org.schabi.newpipe.NewPipeDatabase;
 import org.schabi.newpipe.R;
 import org.schabi.newpipe.database.LocalItem;
 import org.schabi.newpipe.database.playlist.PlaylistStreamEntry;
+import org.schabi.newpipe.database.playlist.model.PlaylistStreamEntity;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
 import org.schabi.newpipe.local.BaseLocalListFragment;
 import org.schabi.newpipe.info_list.InfoItemDialog;
@@ -37,11 +38,14 @@ import org.schabi.newpipe.util.OnClickGesture;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import icepick.State;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
@@ -85,6 +89,19 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
     /* Has the playlist been modified (e.g. items reordered or deleted) */
     private AtomicBoolean isModified;
 
+    /* Join index each displayed stream is currently persisted with */
+    private Map<PlaylistStreamEntry, Integer> persistedJoinIndices;
+    /* Streams removed from the list but not yet from the database */
+    private List<PlaylistStreamEntry> pendingRemovals;
+    /* Saves run one after another, as each starts from the join indices the previous one wrote */
+    private boolean isSaving = false;
+    private boolean isSavePending = false;
+    /* The save in progress and its streams, kept to finish it when the fragment is destroyed */
+    private Single<List<PlaylistStreamEntity>> runningSave;
+    private List<PlaylistStreamEntry> runningSaveEntries;
+    /* Saves outlive the view, as edits made while one runs are only saved after it */
+    private CompositeDisposable saveDisposables;
+
     public static LocalPlaylistFragment getInstance(long playlistId, String name) {
         LocalPlaylistFragment instance = new LocalPlaylistFragment();
         instance.setInitialData(playlistId, name);
@@ -102,9 +119,13 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
         debouncedSaveSignal = PublishSubject.create();
 
         disposables = new CompositeDisposable();
+        saveDisposables = new CompositeDisposable();
 
         isLoadingComplete = new AtomicBoolean();
         isModified = new AtomicBoolean();
+
+        persistedJoinIndices = new IdentityHashMap<>();
+        pendingRemovals = new ArrayList<>();
     }
 
     @Override
@@ -252,13 +273,19 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
         super.onDestroy();
         if (debouncedSaveSignal != null) debouncedSaveSignal.onComplete();
         if (disposables != null) disposables.dispose();
+        flushSaves();
+        if (saveDisposables != null) saveDisposables.dispose();
 
         debouncedSaveSignal = null;
         playlistManager = null;
         disposables = null;
+        saveDisposables = null;
 
         isLoadingComplete = null;
         isModified = null;
+
+        persistedJoinIndices = null;
+        pendingRemovals = null;
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -305,6 +332,12 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
 
         itemListAdapter.clearStreamItemList();
 
+        persistedJoinIndices.clear();
+        pendingRemovals.clear();
+        for (final PlaylistStreamEntry entry : result) {
+            persistedJoinIndices.put(entry, entry.joinIndex);
+        }
+
         if (result.isEmpty()) {
             showEmptyState();
             return;
@@ -406,6 +439,7 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
         if (itemListAdapter == null) return;
 
         itemListAdapter.removeItem(item);
+        if (pendingRemovals != null) pendingRemovals.add(item);
         setVideoCount(itemListAdapter.getItemsList().size());
         saveChanges();
     }
@@ -437,26 +471,108 @@ public class LocalPlaylistFragment extends BaseLocalListFragment<List<PlaylistSt
             return;
         }
 
+        // Wait for the save in progress, which the next one has to start from
+        if (isSaving) {
+            isSavePending = true;
+            return;
+        }
+
+        final List<PlaylistStreamEntry> entries = new ArrayList<>();
+        final Single<List<PlaylistStreamEntity>> save = createSave(entries).cache();
+        isSaving = true;
+        runningSave = save;
+        runningSaveEntries = entries;
+
+        final Disposable disposable = save
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        updatedJoins -> {
+                            onSaved(entries, updatedJoins);
+                            onSaveFinished();
+                        },
+                        throwable -> {
+                            resetSaves();
+                            onError(throwable);
+                        }
+                );
+        saveDisposables.add(disposable);
+    }
+
+    /**
+     * Creates the save of the displayed streams and pending removals, adding the saved
+     * streams to the given list, in the order of the join entities the save returns.
+     * */
+    private Single<List<PlaylistStreamEntity>> createSave(
+            @NonNull final List<PlaylistStreamEntry> entries) {
         final List<LocalItem> items = itemListAdapter.getItemsList();
-        List<Long> streamIds = new ArrayList<>(items.size());
+        final List<PlaylistStreamEntity> joins = new ArrayList<>(items.size());
         for (final LocalItem item : items) {
             if (item instanceof PlaylistStreamEntry) {
-                streamIds.add(((PlaylistStreamEntry) item).streamId);
+                final PlaylistStreamEntry entry = (PlaylistStreamEntry) item;
+                entries.add(entry);
+                joins.add(new PlaylistStreamEntity(playlistId, entry.streamId,
+                        persistedJoinIndices.get(entry)));
             }
         }
 
-        Log.d(TAG, "Updating playlist id=[" + playlistId +
-                "] with [" + streamIds.size() + "] items");
+        final List<PlaylistStreamEntity> removals = new ArrayList<>(pendingRemovals.size());
+        for (final PlaylistStreamEntry entry : pendingRemovals) {
+            removals.add(new PlaylistStreamEntity(playlistId, entry.streamId,
+                    persistedJoinIndices.remove(entry)));
+        }
+        pendingRemovals.clear();
 
-        final Disposable disposable = playlistManager.updateJoin(playlistId, streamIds)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(
-                        () -> { if (isModified != null) isModified.set(false); },
-                        this::onError
-                );
-        disposables.add(disposable);
+        Log.d(TAG, "Updating playlist id=[" + playlistId + "] with [" + joins.size() +
+                "] items and [" + removals.size() + "] removals");
+        return playlistManager.updateJoin(playlistId, joins, removals);
     }
 
+    private void onSaved(@NonNull final List<PlaylistStreamEntry> entries,
+                         @NonNull final List<PlaylistStreamEntity> updatedJoins) {
+        if (persistedJoinIndices == null) return;
+        for (int i = 0; i < entries.size(); i++) {
+            persistedJoinIndices.put(entries.get(i), updatedJoins.get(i).getIndex());
+        }
+    }
+
+    private void onSaveFinished() {
+        isSaving = false;
+        runningSave = null;
+        runningSaveEntries = null;
+        if (isSavePending) {
+            // Edited while saving, so save again from the join indices just written
+            isSavePending = false;
+            saveImmediate();
+        } else if (isModified != null) {
+            isModified.set(false);
+        }
+    }
+
+    private void resetSaves() {
+        isSaving = false;
+        isSavePending = false;
+        runningSave = null;
+        runningSaveEntries = null;
+    }
+
+    /**
+     * Waits for the save in progress, and then runs the save pending after it, as the
+     * fragment is going away along with the edits not saved yet.
+     * */
+    private void flushSaves() {
+        if (!isSaving || runningSave == null || playlistManager == null) return;
+
+        try {
+            onSaved(runningSaveEntries, runningSave.blockingGet());
+            if (isSavePending && itemListAdapter != null) {
+                final List<PlaylistStreamEntry> entries = new ArrayList<>();
+                onSaved(entries, createSave(entries).blockingGet());
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to save playlist id=[" + playlistId + "] on exit", e);
+        }
+        resetSaves();
+    }
 
     private ItemTouchHelper.SimpleCallback getItemTouchCallback() {
         return new ItemTouchHelper.SimpleCallback(ItemTouchHelper.UP | ItemTouchHelper.DOWN,
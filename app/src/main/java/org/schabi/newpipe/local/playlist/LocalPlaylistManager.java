@@ -13,15 +13,21 @@ import org.schabi.newpipe.database.stream.dao.StreamDAO;
 import org.schabi.newpipe.database.stream.model.StreamEntity;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
-import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 
 public class LocalPlaylistManager {
+    /**
+     * Distance between the join indices of adjacent streams when a playlist is written
+     * in full. The gaps allow single streams to be moved by rewriting only their own rows,
+     * until a gap is exhausted and the playlist is renumbered.
+     * */
+    static final int JOIN_INDEX_SPACING = 1024;
 
     private final AppDatabase database;
     private final StreamDAO streamTable;
@@ -52,7 +58,7 @@ public class LocalPlaylistManager {
         return playlistStreamTable.getMaximumIndexOf(playlistId)
                 .firstElement()
                 .map(maxJoinIndex -> database.runInTransaction(() ->
-                        upsertStreams(playlistId, streams, maxJoinIndex + 1))
+                        upsertStreams(playlistId, streams, maxJoinIndex + JOIN_INDEX_SPACING))
                 ).subscribeOn(Schedulers.io());
     }
 
@@ -64,21 +70,135 @@ public class LocalPlaylistManager {
         final List<Long> streamIds = streamTable.upsertAll(streams);
         for (int index = 0; index < streamIds.size(); index++) {
             joinEntities.add(new PlaylistStreamEntity(playlistId, streamIds.get(index),
-                    index + indexOffset));
+                    index * JOIN_INDEX_SPACING + indexOffset));
         }
         return playlistStreamTable.insertAll(joinEntities);
     }
 
-    public Completable updateJoin(final long playlistId, final List<Long> streamIds) {
-        List<PlaylistStreamEntity> joinEntities = new ArrayList<>(streamIds.size());
-        for (int i = 0; i < streamIds.size(); i++) {
-            joinEntities.add(new PlaylistStreamEntity(playlistId, streamIds.get(i), i));
+    /**
+     * Persists the reordering and removal of streams in a playlist, writing only the rows
+     * of streams that have been moved or removed.
+     *
+     * @param joins the remaining streams in their new order, each carrying the join index
+     *              it was last persisted with
+     * @param removed the streams removed from the playlist, carrying their persisted index
+     * @return the same join entities, updated with the join index they are now persisted with
+     * */
+    public Single<List<PlaylistStreamEntity>> updateJoin(final long playlistId,
+                                                         final List<PlaylistStreamEntity> joins,
+                                                         final Collection<PlaylistStreamEntity> removed) {
+        return Single.fromCallable(() -> database.runInTransaction(() -> {
+            final int[] persistedIndices = new int[joins.size()];
+            for (int i = 0; i < joins.size(); i++) {
+                persistedIndices[i] = joins.get(i).getIndex();
+            }
+
+            final int[] newIndices = reindexJoins(persistedIndices);
+            if (newIndices == null) {
+                renumberJoins(playlistId, joins);
+                return joins;
+            }
+
+            // Rows are keyed by their join index, so moved rows are reinserted at their new index
+            final List<PlaylistStreamEntity> staleEntities = new ArrayList<>(removed);
+            final List<PlaylistStreamEntity> movedEntities = new ArrayList<>();
+            for (int i = 0; i < joins.size(); i++) {
+                final PlaylistStreamEntity join = joins.get(i);
+                if (newIndices[i] == persistedIndices[i]) continue;
+
+                staleEntities.add(new PlaylistStreamEntity(playlistId, join.getStreamUid(),
+                        persistedIndices[i]));
+                join.setIndex(newIndices[i]);
+                movedEntities.add(join);
+            }
+
+            playlistStreamTable.delete(staleEntities);
+            playlistStreamTable.insertAll(movedEntities);
+            return joins;
+        })).subscribeOn(Schedulers.io());
+    }
+
+    private void renumberJoins(final long playlistId, final List<PlaylistStreamEntity> joins) {
+        for (int i = 0; i < joins.size(); i++) {
+            joins.get(i).setIndex(i * JOIN_INDEX_SPACING);
         }
+        playlistStreamTable.deleteBatch(playlistId);
+        playlistStreamTable.insertAll(joins);
+    }
 
-        return Completable.fromRunnable(() -> database.runInTransaction(() -> {
-            playlistStreamTable.deleteBatch(playlistId);
-            playlistStreamTable.insertAll(joinEntities);
-        })).subscribeOn(Schedulers.io());
+    /**
+     * Assigns new join indices to streams given the indices they were persisted with,
+     * in their new order. The longest subsequence of streams still in ascending order
+     * keeps its indices, while the remaining streams are spread across the gaps between them.
+     *
+     * @return the new join indices, or null if the gaps are too small and the playlist
+     * needs to be renumbered
+     * */
+    @Nullable
+    static int[] reindexJoins(final int[] persistedIndices) {
+        final int size = persistedIndices.length;
+        final boolean[] isKept = longestAscendingSubsequence(persistedIndices);
+        final int[] newIndices = new int[size];
+
+        int runStart = 0;
+        while (runStart < size) {
+            if (isKept[runStart]) {
+                newIndices[runStart] = persistedIndices[runStart];
+                runStart++;
+                continue;
+            }
+
+            int runEnd = runStart;
+            while (runEnd < size && !isKept[runEnd]) runEnd++;
+            final int runLength = runEnd - runStart;
+
+            // At least one stream is always kept, so one of the bounds always exists
+            final long lower = runStart > 0 ? newIndices[runStart - 1] :
+                    (long) persistedIndices[runEnd] - (long) (runLength + 1) * JOIN_INDEX_SPACING;
+            final long upper = runEnd < size ? persistedIndices[runEnd] :
+                    lower + (long) (runLength + 1) * JOIN_INDEX_SPACING;
+            final long gap = upper - lower;
+            if (gap <= runLength || lower < Integer.MIN_VALUE || upper > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            for (int i = 0; i < runLength; i++) {
+                newIndices[runStart + i] = (int) (lower + gap * (i + 1) / (runLength + 1));
+            }
+            runStart = runEnd;
+        }
+        return newIndices;
+    }
+
+    private static boolean[] longestAscendingSubsequence(final int[] values) {
+        // Patience sorting: tails[k] holds the position of the smallest tail value
+        // of all ascending subsequences with length k + 1
+        final int[] tails = new int[values.length];
+        final int[] predecessors = new int[values.length];
+        int length = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+
+        final boolean[] isMember = new boolean[values.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            isMember[i] = true;
+        }
+        return isMember;
     }
 
     public Flowable<List<PlaylistMetadataEntry>> getPlaylists() {
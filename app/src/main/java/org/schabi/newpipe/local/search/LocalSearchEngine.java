@@ -0,0 +1,283 @@
+package org.schabi.newpipe.local.search;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.schabi.newpipe.NewPipeDatabase;
+import org.schabi.newpipe.database.AppDatabase;
+import org.schabi.newpipe.database.history.model.SearchHistoryEntry;
+import org.schabi.newpipe.database.playlist.model.PlaylistRemoteEntity;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.extractor.InfoItem;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.schabi.newpipe.database.LocalSearchIndex.SEARCH_INDEX_DOC_ID;
+import static org.schabi.newpipe.database.LocalSearchIndex.SEARCH_INDEX_TABLE;
+import static org.schabi.newpipe.database.LocalSearchIndex.SEARCH_INDEX_TITLE;
+import static org.schabi.newpipe.database.LocalSearchIndex.TYPE_REMOTE_PLAYLIST;
+import static org.schabi.newpipe.database.LocalSearchIndex.TYPE_SEARCH_HISTORY;
+import static org.schabi.newpipe.database.LocalSearchIndex.TYPE_STREAM;
+import static org.schabi.newpipe.database.LocalSearchIndex.TYPE_SUBSCRIPTION;
+import static org.schabi.newpipe.database.LocalSearchIndex.TYPE_SPACE;
+import static org.schabi.newpipe.database.LocalSearchIndex.docIdOf;
+import static org.schabi.newpipe.database.LocalSearchIndex.typeOf;
+import static org.schabi.newpipe.database.LocalSearchIndex.uidOf;
+
+/**
+ * Searches the local library (watch history, playlists, subscriptions and search history)
+ * through the full-text index maintained by {@link org.schabi.newpipe.database.LocalSearchIndex}.
+ * */
+public class LocalSearchEngine {
+    /** Weight of a match in the title and subtitle columns, respectively. */
+    private static final double[] COLUMN_WEIGHTS = {1.0, 0.25};
+    /** Bonus for titles starting with the query, as these are most likely what was typed for. */
+    private static final double PREFIX_MATCH_BONUS = 1.0;
+    /** Matches pre-ranked in SQL for every requested one, which are then ranked in full. */
+    private static final int CANDIDATES_PER_MATCH = 8;
+
+    private final AppDatabase database;
+
+    public LocalSearchEngine(final Context context) {
+        database = NewPipeDatabase.getInstance(context);
+    }
+
+    public static final class Match {
+        public final int type;
+        public final long uid;
+        public final String title;
+        public final double score;
+
+        Match(final int type, final long uid, final String title, final double score) {
+            this.type = type;
+            this.uid = uid;
+            this.title = title;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Finds the local items matching all words of the query, as prefixes of any word
+     * in their title or subtitle, ordered by relevance.
+     *
+     * @param types the {@code LocalSearchIndex.TYPE_*} of items to include
+     * */
+    public Single<List<Match>> search(final String query, final int limit, final int... types) {
+        return Single.fromCallable(() -> searchBlocking(query, limit, types))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Finds the streams, channels and remote playlists matching the query, converted to
+     * info items so they can be displayed alongside remote search results.
+     * */
+    public Single<List<InfoItem>> searchInfoItems(final String query, final int limit) {
+        return Single.fromCallable(() -> {
+            final List<Match> matches = searchBlocking(query, limit,
+                    TYPE_STREAM, TYPE_SUBSCRIPTION, TYPE_REMOTE_PLAYLIST);
+
+            final Map<Long, InfoItem> itemsByDocId = new HashMap<>(matches.size());
+            final List<Long> streamIds = uidsOf(matches, TYPE_STREAM);
+            if (!streamIds.isEmpty()) {
+                for (final StreamEntity entity : database.streamDAO().getStreams(streamIds)) {
+                    itemsByDocId.put(docIdOf(TYPE_STREAM, entity.getUid()),
+                            entity.toStreamInfoItem());
+                }
+            }
+            final List<Long> subscriptionIds = uidsOf(matches, TYPE_SUBSCRIPTION);
+            if (!subscriptionIds.isEmpty()) {
+                for (final SubscriptionEntity entity :
+                        database.subscriptionDAO().getSubscriptions(subscriptionIds)) {
+                    itemsByDocId.put(docIdOf(TYPE_SUBSCRIPTION, entity.getUid()),
+                            entity.toChannelInfoItem());
+                }
+            }
+            final List<Long> playlistIds = uidsOf(matches, TYPE_REMOTE_PLAYLIST);
+            if (!playlistIds.isEmpty()) {
+                for (final PlaylistRemoteEntity entity :
+                        database.playlistRemoteDAO().getPlaylists(playlistIds)) {
+                    itemsByDocId.put(docIdOf(TYPE_REMOTE_PLAYLIST, entity.getUid()),
+                            entity.toPlaylistInfoItem());
+                }
+            }
+
+            final List<InfoItem> result = new ArrayList<>(matches.size());
+            for (final Match match : matches) {
+                final InfoItem item = itemsByDocId.get(docIdOf(match.type, match.uid));
+                if (item != null) result.add(item);
+            }
+            return result;
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Finds distinct past searches containing words starting with the words in the query.
+     * */
+    public Single<List<SearchHistoryEntry>> getSimilarSearches(final String query, final int limit) {
+        return Single.fromCallable(() -> {
+            // Repeated searches are stored as separate entries, over-fetch to fill the limit
+            final List<Match> matches = searchBlocking(query, limit * 4, TYPE_SEARCH_HISTORY);
+
+            final Set<String> searches = new HashSet<>();
+            final List<Long> entryIds = new ArrayList<>(limit);
+            for (final Match match : matches) {
+                if (entryIds.size() >= limit) break;
+                if (searches.add(match.title)) entryIds.add(match.uid);
+            }
+            if (entryIds.isEmpty()) return Collections.<SearchHistoryEntry>emptyList();
+
+            final Map<Long, SearchHistoryEntry> entriesById = new HashMap<>(entryIds.size());
+            for (final SearchHistoryEntry entry : database.searchHistoryDAO().getEntries(entryIds)) {
+                entriesById.put(entry.getId(), entry);
+            }
+
+            final List<SearchHistoryEntry> result = new ArrayList<>(entryIds.size());
+            for (final Long entryId : entryIds) {
+                final SearchHistoryEntry entry = entriesById.get(entryId);
+                if (entry != null) result.add(entry);
+            }
+            return result;
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Ranking
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /** Orders matches from the most to the least relevant. */
+    private static final Comparator<Match> RELEVANCE_ORDER = (left, right) -> {
+        final int byScore = Double.compare(right.score, left.score);
+        if (byScore != 0) return byScore;
+        // Prefer shorter titles, since the query makes up a larger part of them
+        return Integer.compare(lengthOf(left.title), lengthOf(right.title));
+    };
+
+    /**
+     * Ranks the rows matching the query in two steps, as the index returns them in docid order.
+     * The rows are first pre-ranked in SQL, by whether their title starts with the query and by
+     * its length, which only keeps a few candidates for each requested match, so short prefixes
+     * matching most of a large library are not all scored. The candidates are then scored from
+     * their {@code matchinfo}, keeping only the best ones while reading them.
+     * */
+    private List<Match> searchBlocking(final String query, final int limit, final int... types) {
+        final String matchQuery = toMatchQuery(query);
+        if (matchQuery == null || limit <= 0) return Collections.emptyList();
+
+        final StringBuilder typeList = new StringBuilder();
+        for (final int type : types) {
+            if (typeList.length() > 0) typeList.append(',');
+            typeList.append(type);
+        }
+
+        final String normalizedQuery = query.trim().toLowerCase(Locale.ROOT);
+        // Least relevant of the kept matches first, to be replaced by better ones
+        final PriorityQueue<Match> bestMatches = new PriorityQueue<>(Math.min(limit, 64) + 1,
+                Collections.reverseOrder(RELEVANCE_ORDER));
+        final Cursor cursor = database.query("SELECT " + SEARCH_INDEX_DOC_ID + ", " +
+                SEARCH_INDEX_TITLE + ", matchinfo(" + SEARCH_INDEX_TABLE + ", 'pcx')" +
+                " FROM " + SEARCH_INDEX_TABLE +
+                " WHERE " + SEARCH_INDEX_TABLE + " MATCH ?" +
+                " AND " + SEARCH_INDEX_DOC_ID + " IN (SELECT " + SEARCH_INDEX_DOC_ID +
+                " FROM " + SEARCH_INDEX_TABLE +
+                " WHERE " + SEARCH_INDEX_TABLE + " MATCH ?" +
+                " AND " + SEARCH_INDEX_DOC_ID + " % " + TYPE_SPACE + " IN (" + typeList + ")" +
+                " ORDER BY " + SEARCH_INDEX_TITLE + " LIKE ? ESCAPE '\\' DESC," +
+                " length(" + SEARCH_INDEX_TITLE + ")" +
+                " LIMIT " + limit * CANDIDATES_PER_MATCH + ")",
+                new Object[]{matchQuery, matchQuery, escapeLike(normalizedQuery) + "%"});
+        try {
+            while (cursor.moveToNext()) {
+                final long docId = cursor.getLong(0);
+                final String title = cursor.getString(1);
+                double score = scoreOf(cursor.getBlob(2));
+                if (title != null && title.toLowerCase(Locale.ROOT).startsWith(normalizedQuery)) {
+                    score += PREFIX_MATCH_BONUS;
+                }
+                bestMatches.offer(new Match(typeOf(docId), uidOf(docId), title, score));
+                if (bestMatches.size() > limit) bestMatches.poll();
+            }
+        } finally {
+            cursor.close();
+        }
+
+        final List<Match> matches = new ArrayList<>(bestMatches);
+        Collections.sort(matches, RELEVANCE_ORDER);
+        return matches;
+    }
+
+    /**
+     * Converts free text into an FTS query matching rows that contain all of its words
+     * as prefixes, stripping any characters that have a meaning in the FTS query syntax.
+     *
+     * @return the FTS query, or null if the text contains no searchable words
+     * */
+    @Nullable
+    static String toMatchQuery(@Nullable final String query) {
+        if (query == null) return null;
+
+        final StringBuilder matchQuery = new StringBuilder();
+        for (final String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (matchQuery.length() > 0) matchQuery.append(' ');
+            matchQuery.append(word).append('*');
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
+    }
+
+    /**
+     * Scores a row from its FTS {@code matchinfo(..., 'pcx')} blob, where every match of a
+     * phrase weighs more the rarer the phrase is within the whole index.
+     * */
+    static double scoreOf(@NonNull final byte[] matchInfo) {
+        final ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        final int phraseCount = buffer.getInt();
+        final int columnCount = buffer.getInt();
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                final int rowHits = buffer.getInt();
+                final int totalHits = buffer.getInt();
+                buffer.getInt(); // rows with hits, unused
+
+                if (rowHits > 0 && column < COLUMN_WEIGHTS.length) {
+                    score += COLUMN_WEIGHTS[column] * rowHits / Math.max(totalHits, 1);
+                }
+            }
+        }
+        return score;
+    }
+
+    private static String escapeLike(@NonNull final String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static List<Long> uidsOf(@NonNull final List<Match> matches, final int type) {
+        final List<Long> uids = new ArrayList<>();
+        for (final Match match : matches) {
+            if (match.type == type) uids.add(match.uid);
+        }
+        return uids;
+    }
+
+    private static int lengthOf(@Nullable final String title) {
+        return title == null ? Integer.MAX_VALUE : title.length();
+    }
+}
@@ -1,7 +1,9 @@
 package org.schabi.newpipe.local.subscription;
 
+import android.arch.persistence.room.InvalidationTracker;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import org.schabi.newpipe.MainActivity;
@@ -13,7 +15,10 @@ import org.schabi.newpipe.extractor.channel.ChannelInfo;
 import org.schabi.newpipe.util.ExtractorHelper;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -60,10 +65,28 @@ public class SubscriptionService {
 
     private Scheduler subscriptionScheduler;
 
+    /**
+     * Keys of all subscribed channels, as built by {@link #keyOf(int, String)}.
+     * Replaced atomically on every table update, and null from every change of the table
+     * until the update reflecting it is received, so it is never consulted while stale.
+     * */
+    @Nullable private volatile Set<String> subscribedCache;
+
     private SubscriptionService(Context context) {
         db = NewPipeDatabase.getInstance(context.getApplicationContext());
         subscription = getSubscriptionInfos();
 
+        db.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer(SubscriptionEntity.SUBSCRIPTION_TABLE) {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        subscribedCache = null;
+                    }
+                });
+        // Not debounced, as lookups fall back to the database until the cache is updated
+        subscriptionTable().getAll().subscribe(this::onSubscriptionsChanged,
+                error -> Log.e(TAG, "Unable to maintain subscribed channel cache", error));
+
         final Executor subscriptionExecutor = Executors.newFixedThreadPool(SUBSCRIPTION_THREAD_POOL_SIZE);
         subscriptionScheduler = Schedulers.from(subscriptionExecutor);
     }
@@ -98,6 +121,32 @@ public class SubscriptionService {
         return subscription;
     }
 
+    /**
+     * Checks if the channel is subscribed to using the in-memory subscription cache,
+     * without touching the database.
+     *
+     * @return whether the channel is subscribed, or null if the cache is not yet available or
+     * the table changed since it was built, in which case the caller should fall back to
+     * {@link SubscriptionDAO#getSubscription(int, String)}.
+     * */
+    @Nullable
+    public Boolean isSubscribed(final int serviceId, @NonNull final String url) {
+        final Set<String> cache = subscribedCache;
+        return cache == null ? null : cache.contains(keyOf(serviceId, url));
+    }
+
+    private void onSubscriptionsChanged(@NonNull final List<SubscriptionEntity> entities) {
+        final Set<String> cache = new HashSet<>(entities.size());
+        for (final SubscriptionEntity entity : entities) {
+            cache.add(keyOf(entity.getServiceId(), entity.getUrl()));
+        }
+        subscribedCache = Collections.unmodifiableSet(cache);
+    }
+
+    private static String keyOf(final int serviceId, @NonNull final String url) {
+        return serviceId + ":" + url;
+    }
+
     public Maybe<ChannelInfo> getChannelInfo(final SubscriptionEntity subscriptionEntity) {
         if (DEBUG) Log.d(TAG, "getChannelInfo() called with: subscriptionEntity = [" + subscriptionEntity + "]");
 
@@ -134,6 +183,11 @@ public class SubscriptionService {
             }
         };
 
+        // Most opened channels are not subscribed, skip the lookup entirely for those
+        if (Boolean.FALSE.equals(isSubscribed(info.getServiceId(), info.getUrl()))) {
+            return Completable.complete();
+        }
+
         return subscriptionTable().getSubscription(info.getServiceId(), info.getUrl())
                 .firstOrError()
                 .flatMapCompletable(update);
@@ -28,6 +28,7 @@ import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -48,6 +49,7 @@ import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.player.event.PlayerEventListener;
 import org.schabi.newpipe.player.helper.LockManager;
 import org.schabi.newpipe.player.helper.PlayerHelper;
+import org.schabi.newpipe.player.helper.StartupTracer;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
 import org.schabi.newpipe.util.ListHelper;
 import org.schabi.newpipe.util.NavigationHelper;
@@ -96,6 +98,17 @@ public final class BackgroundPlayer extends Service {
     private RemoteViews bigNotRemoteView;
     private final String setAlphaMethodName = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) ? "setImageAlpha" : "setAlpha";
 
+    /** The progress shown in the notification is updated at most once a second. */
+    private static final long NOTIFICATION_PROGRESS_INTERVAL_MILLIS = 1000;
+    private final NotificationUpdateThrottle notificationThrottle =
+            new NotificationUpdateThrottle(NOTIFICATION_PROGRESS_INTERVAL_MILLIS,
+                    NOTIFICATION_PROGRESS_LOOP_INTERVAL_MILLIS);
+    // What the notification shows, applied again whenever its remote views are rebuilt
+    private Bitmap notificationCover;
+    private int notificationProgress = 0;
+    private int notificationDuration = 100;
+    private int notificationPlayPauseDrawable = -1;
+
     private boolean shouldUpdateOnProgress;
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -120,11 +133,13 @@ public final class BackgroundPlayer extends Service {
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (DEBUG) Log.d(TAG, "onStartCommand() called with: intent = [" + intent +
                 "], flags = [" + flags + "], startId = [" + startId + "]");
+        // Sticky services are restarted without an intent after their process was killed
+        if (intent == null) basePlayerImpl.restoreJournaledSession();
         basePlayerImpl.handleIntent(intent);
         if (basePlayerImpl.mediaSessionManager != null) {
             basePlayerImpl.mediaSessionManager.handleMediaButtonIntent(intent);
         }
-        return START_NOT_STICKY;
+        return START_STICKY;
     }
 
     @Override
@@ -152,6 +167,9 @@ public final class BackgroundPlayer extends Service {
             basePlayerImpl.destroy();
         }
         if (notificationManager != null) notificationManager.cancel(NOTIFICATION_ID);
+        if (DEBUG) Log.d(TAG, "Notification posted [" + notificationThrottle.getPostCount() +
+                "] times, [" + notificationThrottle.getPostsPerMinute() + "] per minute");
+        notificationCover = null;
         mBinder = null;
         basePlayerImpl = null;
         lockManager = null;
@@ -164,11 +182,7 @@ public final class BackgroundPlayer extends Service {
         if (DEBUG) Log.d(TAG, "onScreenOnOff() called with: on = [" + on + "]");
         shouldUpdateOnProgress = on;
         basePlayerImpl.triggerProgressUpdate();
-        if (on) {
-            basePlayerImpl.startProgressLoop();
-        } else {
-            basePlayerImpl.stopProgressLoop();
-        }
+        basePlayerImpl.updateProgressLoop();
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -231,6 +245,23 @@ public final class BackgroundPlayer extends Service {
         }
 
         setRepeatModeIcon(remoteViews, basePlayerImpl.getRepeatMode());
+
+        remoteViews.setProgressBar(R.id.notificationProgressBar, notificationDuration,
+                notificationProgress, false);
+        if (notificationCover != null) {
+            remoteViews.setImageViewBitmap(R.id.notificationCover, notificationCover);
+        }
+        if (notificationPlayPauseDrawable != -1) {
+            remoteViews.setImageViewResource(R.id.notificationPlayPause, notificationPlayPauseDrawable);
+        }
+    }
+
+    /**
+     * Sets the progress shown once the notification is rebuilt.
+     * */
+    private void setNotificationProgress(int progress, int duration) {
+        notificationProgress = progress;
+        notificationDuration = duration;
     }
 
     /**
@@ -243,10 +274,12 @@ public final class BackgroundPlayer extends Service {
         //if (DEBUG) Log.d(TAG, "updateNotification() called with: drawableId = [" + drawableId + "]");
         if (notBuilder == null) return;
         if (drawableId != -1) {
+            notificationPlayPauseDrawable = drawableId;
             if (notRemoteView != null) notRemoteView.setImageViewResource(R.id.notificationPlayPause, drawableId);
             if (bigNotRemoteView != null) bigNotRemoteView.setImageViewResource(R.id.notificationPlayPause, drawableId);
         }
         notificationManager.notify(NOTIFICATION_ID, notBuilder.build());
+        notificationThrottle.onPosted(SystemClock.elapsedRealtime());
     }
 
     private void setControlsOpacity(@IntRange(from = 0, to = 255) int opacity) {
@@ -287,14 +320,15 @@ public final class BackgroundPlayer extends Service {
         public void handleIntent(final Intent intent) {
             super.handleIntent(intent);
 
+            setNotificationProgress(0, 100);
             resetNotification();
-            if (bigNotRemoteView != null) bigNotRemoteView.setProgressBar(R.id.notificationProgressBar, 100, 0, false);
-            if (notRemoteView != null) notRemoteView.setProgressBar(R.id.notificationProgressBar, 100, 0, false);
             startForeground(NOTIFICATION_ID, notBuilder.build());
+            notificationThrottle.onPosted(SystemClock.elapsedRealtime());
         }
 
         @Override
         public void initThumbnail(final String url) {
+            notificationCover = null;
             resetNotification();
             if (notRemoteView != null) notRemoteView.setImageViewResource(R.id.notificationCover, R.drawable.dummy_thumbnail);
             if (bigNotRemoteView != null) bigNotRemoteView.setImageViewResource(R.id.notificationCover, R.drawable.dummy_thumbnail);
@@ -308,11 +342,8 @@ public final class BackgroundPlayer extends Service {
 
             if (loadedImage != null) {
                 // rebuild notification here since remote view does not release bitmaps, causing memory leaks
+                notificationCover = loadedImage;
                 resetNotification();
-
-                if (notRemoteView != null) notRemoteView.setImageViewBitmap(R.id.notificationCover, loadedImage);
-                if (bigNotRemoteView != null) bigNotRemoteView.setImageViewBitmap(R.id.notificationCover, loadedImage);
-
                 updateNotification(-1);
             }
         }
@@ -321,6 +352,8 @@ public final class BackgroundPlayer extends Service {
         public void onPrepared(boolean playWhenReady) {
             super.onPrepared(playWhenReady);
             simpleExoPlayer.setVolume(1f);
+            // Audio only playback has no first frame, it has started once ready
+            StartupTracer.getInstance().end("audio_ready");
         }
 
         @Override
@@ -329,19 +362,24 @@ public final class BackgroundPlayer extends Service {
             updatePlayback();
         }
 
+        @Override
+        protected int getProgressLoopIntervalMillis() {
+            if (activityListener != null) return PROGRESS_LOOP_INTERVAL_MILLIS;
+            return shouldUpdateOnProgress ? NOTIFICATION_PROGRESS_LOOP_INTERVAL_MILLIS :
+                    IDLE_PROGRESS_LOOP_INTERVAL_MILLIS;
+        }
+
         @Override
         public void onUpdateProgress(int currentProgress, int duration, int bufferPercent) {
             updateProgress(currentProgress, duration, bufferPercent);
 
-            if (!shouldUpdateOnProgress) return;
+            if (!shouldUpdateOnProgress || !notificationThrottle.shouldPostProgress(
+                    currentProgress, duration, SystemClock.elapsedRealtime())) return;
+            setNotificationProgress(currentProgress, duration);
             resetNotification();
             if (bigNotRemoteView != null) {
-                bigNotRemoteView.setProgressBar(R.id.notificationProgressBar, duration, currentProgress, false);
                 bigNotRemoteView.setTextViewText(R.id.notificationTime, getTimeString(currentProgress) + " / " + getTimeString(duration));
             }
-            if (notRemoteView != null) {
-                notRemoteView.setProgressBar(R.id.notificationProgressBar, duration, currentProgress, false);
-            }
             updateNotification(-1);
         }
 
@@ -430,11 +468,13 @@ public final class BackgroundPlayer extends Service {
             updateMetadata();
             updatePlayback();
             triggerProgressUpdate();
+            updateProgressLoop();
         }
 
         /*package-private*/ void removeActivityListener(PlayerEventListener listener) {
             if (activityListener == listener) {
                 activityListener = null;
+                updateProgressLoop();
             }
         }
 
@@ -564,9 +604,8 @@ public final class BackgroundPlayer extends Service {
 
             setControlsOpacity(255);
 
+            setNotificationProgress(100, 100);
             resetNotification();
-            if (bigNotRemoteView != null) bigNotRemoteView.setProgressBar(R.id.notificationProgressBar, 100, 100, false);
-            if (notRemoteView != null) notRemoteView.setProgressBar(R.id.notificationProgressBar, 100, 100, false);
             updateNotification(R.drawable.ic_replay_white);
 
             lockManager.releaseWifiAndCpu();
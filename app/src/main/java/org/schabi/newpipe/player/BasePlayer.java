@@ -37,7 +37,6 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayerFactory;
-import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.RenderersFactory;
@@ -48,7 +47,6 @@ import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.util.Util;
 import com.nostra13.universalimageloader.core.ImageLoader;
 import com.nostra13.universalimageloader.core.assist.FailReason;
@@ -61,27 +59,35 @@ import org.schabi.newpipe.extractor.stream.StreamType;
 import org.schabi.newpipe.local.history.HistoryRecordManager;
 import org.schabi.newpipe.player.helper.AudioReactor;
 import org.schabi.newpipe.player.helper.LoadController;
+import org.schabi.newpipe.player.helper.MediaCacheManager;
+import org.schabi.newpipe.player.helper.MediaPrefetcher;
 import org.schabi.newpipe.player.helper.MediaSessionManager;
+import org.schabi.newpipe.player.helper.PersistentBandwidthMeter;
 import org.schabi.newpipe.player.helper.PlayerDataSource;
 import org.schabi.newpipe.player.helper.PlayerHelper;
+import org.schabi.newpipe.player.helper.StartupTracer;
 import org.schabi.newpipe.player.mediasource.FailedMediaSource;
 import org.schabi.newpipe.player.playback.BasePlayerMediaSession;
 import org.schabi.newpipe.player.playback.CustomTrackSelector;
 import org.schabi.newpipe.player.playback.MediaSourceManager;
+import org.schabi.newpipe.player.playback.PreloadPolicy;
 import org.schabi.newpipe.player.playback.PlaybackListener;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
 import org.schabi.newpipe.player.playqueue.PlayQueueAdapter;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+import org.schabi.newpipe.player.playqueue.PlayQueueJournal;
 import org.schabi.newpipe.util.SerializedCache;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.SerialDisposable;
 
 import static com.google.android.exoplayer2.Player.DISCONTINUITY_REASON_INTERNAL;
 import static com.google.android.exoplayer2.Player.DISCONTINUITY_REASON_PERIOD_TRANSITION;
@@ -107,6 +113,7 @@ public abstract class BasePlayer implements
     @NonNull final protected IntentFilter intentFilter;
 
     @NonNull final protected HistoryRecordManager recordManager;
+    @NonNull final protected PlayQueueJournal queueJournal;
 
     /*//////////////////////////////////////////////////////////////////////////
     // Intent
@@ -130,9 +137,12 @@ public abstract class BasePlayer implements
     protected PlayQueueAdapter playQueueAdapter;
 
     protected MediaSourceManager playbackManager;
+    protected PreloadPolicy preloadPolicy;
 
     protected StreamInfo currentInfo;
     protected PlayQueueItem currentItem;
+    /** Last item of the queue which an auto queued item was chosen for. */
+    private PlayQueueItem autoQueuedItem;
 
     protected Toast errorToast;
 
@@ -142,13 +152,37 @@ public abstract class BasePlayer implements
 
     protected final static int FAST_FORWARD_REWIND_AMOUNT_MILLIS = 10000; // 10 Seconds
     protected final static int PLAY_PREV_ACTIVATION_LIMIT_MILLIS = 5000; // 5 seconds
+    /**
+     * Progress loop rates while a seekbar shows the progress, while only a notification shows
+     * it, and while nothing does, when the loop only keeps the journaled position recent.
+     *
+     * @see #getProgressLoopIntervalMillis()
+     * */
     protected final static int PROGRESS_LOOP_INTERVAL_MILLIS = 500;
+    protected final static int NOTIFICATION_PROGRESS_LOOP_INTERVAL_MILLIS = 1000;
+    protected final static int IDLE_PROGRESS_LOOP_INTERVAL_MILLIS = 5000;
     protected final static int RECOVERY_SKIP_THRESHOLD_MILLIS = 3000; // 3 seconds
+    /**
+     * The next item is auto queued once the last one played this long, so it does not hold
+     * up the startup of the last one, or once this little of the last one is left.
+     * */
+    protected final static int AUTO_QUEUE_PROGRESS_MILLIS = 10000; // 10 seconds
+    protected final static int AUTO_QUEUE_REMAINING_MILLIS = 30000; // 30 seconds
+    /** Low latency live streams catch up once this far behind their default position. */
+    protected final static int LIVE_CATCH_UP_THRESHOLD_MILLIS = 6000; // 6 seconds
 
     protected CustomTrackSelector trackSelector;
     protected PlayerDataSource dataSource;
+    protected MediaPrefetcher mediaPrefetcher;
+    /** Measures the network for the current session, seeded from earlier ones. */
+    protected PersistentBandwidthMeter bandwidthMeter;
+    protected LoadController loadController;
+    private boolean isLowLatencyLive;
+    private LiveLatencyMonitor liveLatencyMonitor;
 
     protected SimpleExoPlayer simpleExoPlayer;
+    /** Cache keys of the current stream, kept in the cache for seeking back and replaying. */
+    @NonNull private List<String> pinnedCacheKeys = Collections.emptyList();
     protected AudioReactor audioReactor;
     protected MediaSessionManager mediaSessionManager;
 
@@ -156,7 +190,10 @@ public abstract class BasePlayer implements
     private boolean isSynchronizing = false;
 
     protected Disposable progressUpdateReactor;
-    protected CompositeDisposable databaseUpdateReactor;
+    @NonNull private final SerialDisposable journalReactor = new SerialDisposable();
+    private int progressLoopIntervalMillis;
+    /** Ticks of the progress loop in this player, each of which wakes up the main thread. */
+    private long progressLoopWakeups;
 
     //////////////////////////////////////////////////////////////////////////*/
 
@@ -174,6 +211,7 @@ public abstract class BasePlayer implements
         context.registerReceiver(broadcastReceiver, intentFilter);
 
         this.recordManager = new HistoryRecordManager(context);
+        this.queueJournal = new PlayQueueJournal(context);
     }
 
     public void setup() {
@@ -184,20 +222,22 @@ public abstract class BasePlayer implements
     public void initPlayer(final boolean playOnReady) {
         if (DEBUG) Log.d(TAG, "initPlayer() called with: context = [" + context + "]");
 
-        if (databaseUpdateReactor != null) databaseUpdateReactor.dispose();
-        databaseUpdateReactor = new CompositeDisposable();
-
         final String userAgent = Downloader.USER_AGENT;
-        final DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+        bandwidthMeter = new PersistentBandwidthMeter(context);
         dataSource = new PlayerDataSource(context, userAgent, bandwidthMeter);
+        mediaPrefetcher = new MediaPrefetcher(context, userAgent, bandwidthMeter);
+
+        preloadPolicy = new PreloadPolicy(context, bandwidthMeter);
 
         final TrackSelection.Factory trackSelectionFactory =
                 PlayerHelper.getQualitySelector(context, bandwidthMeter);
         trackSelector = new CustomTrackSelector(trackSelectionFactory);
 
-        final LoadControl loadControl = new LoadController(context);
+        loadController = new LoadController(context, bandwidthMeter);
+        isLowLatencyLive = PlayerHelper.isLowLatencyLiveEnabled(context);
+        liveLatencyMonitor = new LiveLatencyMonitor(LIVE_CATCH_UP_THRESHOLD_MILLIS);
         final RenderersFactory renderFactory = new DefaultRenderersFactory(context);
-        simpleExoPlayer = ExoPlayerFactory.newSimpleInstance(renderFactory, trackSelector, loadControl);
+        simpleExoPlayer = ExoPlayerFactory.newSimpleInstance(renderFactory, trackSelector, loadController);
         simpleExoPlayer.addListener(this);
         simpleExoPlayer.setPlayWhenReady(playOnReady);
         simpleExoPlayer.setSeekParameters(PlayerHelper.getSeekParameters(context));
@@ -216,11 +256,18 @@ public abstract class BasePlayer implements
         // Resolve play queue
         if (!intent.hasExtra(PLAY_QUEUE_KEY)) return;
         final String intentCacheKey = intent.getStringExtra(PLAY_QUEUE_KEY);
-        final PlayQueue queue = SerializedCache.getInstance().take(intentCacheKey, PlayQueue.class);
+        PlayQueue queue = SerializedCache.getInstance().take(intentCacheKey, PlayQueue.class);
+        final boolean isAppendOnly = intent.getBooleanExtra(APPEND_ONLY, false);
+        final StartupTracer startupTracer = StartupTracer.getInstance();
+        if (!isAppendOnly) {
+            // Players may also be started without a traced origin, e.g. from a notification
+            startupTracer.beginIfIdle(context, "player_intent");
+            startupTracer.mark("queue_received");
+        }
         if (queue == null) return;
 
         // Resolve append intents
-        if (intent.getBooleanExtra(APPEND_ONLY, false) && playQueue != null) {
+        if (isAppendOnly && playQueue != null) {
             int sizeBeforeAppend = playQueue.size();
             playQueue.append(queue.getStreams());
 
@@ -237,7 +284,32 @@ public abstract class BasePlayer implements
         final float playbackPitch = intent.getFloatExtra(PLAYBACK_PITCH, getPlaybackPitch());
 
         // Good to go...
-        initPlayback(queue, repeatMode, playbackSpeed, playbackPitch, /*playOnInit=*/true);
+        startupTracer.beginSection("initPlayback");
+        try {
+            initPlayback(queue, repeatMode, playbackSpeed, playbackPitch, /*playOnInit=*/true);
+        } finally {
+            startupTracer.endSection();
+        }
+        startupTracer.mark("playback_initialized");
+    }
+
+    /**
+     * Restores the session recorded by the {@link PlayQueueJournal}, paused, for players
+     * recreated by the system after their process was killed, which lost the queues handed
+     * over to them in memory. Shuts the player down if there is no session to restore.
+     * */
+    public void restoreJournaledSession() {
+        if (DEBUG) Log.d(TAG, "restoreJournaledSession() called");
+        journalReactor.set(queueJournal.restore()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        queue -> initPlayback(queue, getRepeatMode(), getPlaybackSpeed(),
+                                getPlaybackPitch(), /*playOnReady=*/false),
+                        throwable -> {
+                            Log.e(TAG, "Unable to restore the journaled session", throwable);
+                            onPlaybackShutdown();
+                        },
+                        this::onPlaybackShutdown));
     }
 
     protected void initPlayback(@NonNull final PlayQueue queue,
@@ -252,8 +324,9 @@ public abstract class BasePlayer implements
 
         playQueue = queue;
         playQueue.init();
+        queueJournal.attach(playQueue);
         if (playbackManager != null) playbackManager.dispose();
-        playbackManager = new MediaSourceManager(this, playQueue);
+        playbackManager = new MediaSourceManager(this, playQueue, preloadPolicy);
 
         if (playQueueAdapter != null) playQueueAdapter.dispose();
         playQueueAdapter = new PlayQueueAdapter(context, playQueue);
@@ -268,10 +341,17 @@ public abstract class BasePlayer implements
         }
         if (isProgressLoopRunning()) stopProgressLoop();
         if (playQueue != null) playQueue.dispose();
+        queueJournal.detach();
         if (audioReactor != null) audioReactor.dispose();
         if (playbackManager != null) playbackManager.dispose();
-        if (databaseUpdateReactor != null) databaseUpdateReactor.dispose();
+        if (mediaPrefetcher != null) mediaPrefetcher.dispose();
+        if (bandwidthMeter != null) bandwidthMeter.save();
         if (mediaSessionManager != null) mediaSessionManager.dispose();
+        if (DEBUG && liveLatencyMonitor != null && liveLatencyMonitor.getSampleCount() > 0) {
+            Log.d(TAG, "Live latency averaged [" + liveLatencyMonitor.getAverageLatencyMillis() +
+                    "ms], peaked at [" + liveLatencyMonitor.getMaximumLatencyMillis() + "ms], " +
+                    "caught up [" + liveLatencyMonitor.getCatchUpCount() + "] times");
+        }
 
         if (playQueueAdapter != null) {
             playQueueAdapter.unsetSelectedListener();
@@ -281,14 +361,26 @@ public abstract class BasePlayer implements
 
     public void destroy() {
         if (DEBUG) Log.d(TAG, "destroy() called");
+        journalReactor.dispose();
         destroyPlayer();
         unregisterBroadcastReceiver();
+        recordManager.flushPendingWritesBlocking();
+        MediaCacheManager.getInstance(context).unpin(pinnedCacheKeys);
+        pinnedCacheKeys = Collections.emptyList();
+        if (DEBUG) Log.d(TAG, "Progress loop woke up [" + progressLoopWakeups + "] times");
 
         trackSelector = null;
         simpleExoPlayer = null;
         mediaSessionManager = null;
     }
 
+    private void pinCacheKeys(@NonNull final List<String> cacheKeys) {
+        final MediaCacheManager cacheManager = MediaCacheManager.getInstance(context);
+        cacheManager.unpin(pinnedCacheKeys);
+        cacheManager.pin(cacheKeys);
+        pinnedCacheKeys = cacheKeys;
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // Thumbnail Loading
     //////////////////////////////////////////////////////////////////////////*/
@@ -371,6 +463,7 @@ public abstract class BasePlayer implements
             case C.TYPE_HLS:
                 return dataSource.getHlsMediaSourceFactory().createMediaSource(uri);
             case C.TYPE_OTHER:
+                if (mediaPrefetcher != null) mediaPrefetcher.register(cacheKey, uri);
                 return dataSource.getExtractorMediaSourceFactory(cacheKey).createMediaSource(uri);
             default:
                 throw new IllegalStateException("Unsupported type: " + type);
@@ -424,6 +517,14 @@ public abstract class BasePlayer implements
     public void changeState(int state) {
         if (DEBUG) Log.d(TAG, "changeState() called with: state = [" + state + "]");
         currentState = state;
+        if (mediaPrefetcher != null) {
+            // Prefetching the next stream must not slow down the one being waited for
+            if (state == STATE_BLOCKED || state == STATE_BUFFERING) {
+                mediaPrefetcher.pause();
+            } else {
+                mediaPrefetcher.resume();
+            }
+        }
         switch (state) {
             case STATE_BLOCKED:
                 onBlocked();
@@ -466,6 +567,8 @@ public abstract class BasePlayer implements
 
     public void onCompleted() {
         if (DEBUG) Log.d(TAG, "onCompleted() called");
+        // The last item may end before the threshold was crossed, e.g. when seeked to the end
+        maybeAutoQueueNextItem(/*hasEnded=*/true);
         if (playQueue.getIndex() < playQueue.size() - 1) playQueue.offsetIndex(+1);
         if (isProgressLoopRunning()) stopProgressLoop();
     }
@@ -509,9 +612,29 @@ public abstract class BasePlayer implements
 
     public abstract void onUpdateProgress(int currentProgress, int duration, int bufferPercent);
 
+    /**
+     * Returns how often the progress loop updates, depending on what currently shows the
+     * progress. Players always showing a seekbar while playing update at the full rate.
+     * */
+    protected int getProgressLoopIntervalMillis() {
+        return PROGRESS_LOOP_INTERVAL_MILLIS;
+    }
+
     protected void startProgressLoop() {
         if (progressUpdateReactor != null) progressUpdateReactor.dispose();
-        progressUpdateReactor = getProgressReactor();
+        progressLoopIntervalMillis = getProgressLoopIntervalMillis();
+        progressUpdateReactor = getProgressReactor(progressLoopIntervalMillis);
+    }
+
+    /**
+     * Restarts the running progress loop at a new rate, once what shows the progress changed.
+     * */
+    protected void updateProgressLoop() {
+        if (!isProgressLoopRunning() ||
+                progressLoopIntervalMillis == getProgressLoopIntervalMillis()) return;
+        if (DEBUG) Log.d(TAG, "updateProgressLoop() called with: interval = [" +
+                getProgressLoopIntervalMillis() + "]");
+        startProgressLoop();
     }
 
     protected void stopProgressLoop() {
@@ -521,17 +644,72 @@ public abstract class BasePlayer implements
 
     public void triggerProgressUpdate() {
         if (simpleExoPlayer == null) return;
+        final int currentProgress = Math.max((int) simpleExoPlayer.getCurrentPosition(), 0);
         onUpdateProgress(
-                Math.max((int) simpleExoPlayer.getCurrentPosition(), 0),
+                currentProgress,
                 (int) simpleExoPlayer.getDuration(),
                 simpleExoPlayer.getBufferedPercentage()
         );
+
+        if (playQueue != null && isPrepared && currentProgress > 0) {
+            queueJournal.recordPosition(playQueue.getIndex(), currentProgress);
+        }
+        if (isPrepared) maybeAutoQueueNextItem(/*hasEnded=*/false);
+        if (isPrepared && isLive()) maybeCatchUpWithLiveEdge();
+    }
+
+    /**
+     * Records the latency of live streams, and jumps back to the default position of low latency
+     * ones once they fell behind it by rebuffering.
+     * */
+    private void maybeCatchUpWithLiveEdge() {
+        final Timeline.Window window = getCurrentWindow();
+        if (window == null || liveLatencyMonitor == null) return;
+
+        final long driftMillis = window.getDefaultPositionMs() -
+                simpleExoPlayer.getCurrentPosition();
+        final boolean shouldCatchUp = liveLatencyMonitor.onProgress(getLiveLatencyMillis(),
+                driftMillis);
+        if (!isLowLatencyLive || !shouldCatchUp || !isPlaying()) return;
+
+        if (DEBUG) Log.d(TAG, "Live stream fell behind by [" + driftMillis + "ms], catching up");
+        seekToDefault();
     }
 
-    private Disposable getProgressReactor() {
-        return Observable.interval(PROGRESS_LOOP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+    /**
+     * Appends an item related to the last one in the queue, once it crossed the auto queue
+     * threshold. Being queued next, the media source manager resolves the appended item and
+     * prefetches its opening while the last one still plays, so the transition is gapless.
+     * */
+    private void maybeAutoQueueNextItem(final boolean hasEnded) {
+        if (simpleExoPlayer == null || playQueue == null || currentItem == null ||
+                currentInfo == null || currentItem == autoQueuedItem ||
+                playQueue.indexOf(currentItem) != playQueue.size() - 1 ||
+                getRepeatMode() != Player.REPEAT_MODE_OFF ||
+                !PlayerHelper.isAutoQueueEnabled(context)) return;
+
+        final long progressMillis = simpleExoPlayer.getCurrentPosition();
+        final long durationMillis = simpleExoPlayer.getDuration();
+        final boolean isNearEnd = durationMillis != C.TIME_UNSET &&
+                durationMillis - progressMillis <= AUTO_QUEUE_REMAINING_MILLIS;
+        if (!hasEnded && !isNearEnd && progressMillis < AUTO_QUEUE_PROGRESS_MILLIS) return;
+
+        autoQueuedItem = currentItem;
+        final PlayQueue autoQueue = PlayerHelper.autoQueueOf(currentInfo, playQueue.getStreams());
+        if (autoQueue == null) return;
+
+        if (DEBUG) Log.d(TAG, "Auto queueing after [" + currentItem.getTitle() + "] at " +
+                "progress=[" + progressMillis + "], duration=[" + durationMillis + "]");
+        playQueue.append(autoQueue.getStreams());
+    }
+
+    private Disposable getProgressReactor(final int intervalMillis) {
+        return Observable.interval(intervalMillis, TimeUnit.MILLISECONDS)
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(ignored -> triggerProgressUpdate());
+                .subscribe(ignored -> {
+                    progressLoopWakeups++;
+                    triggerProgressUpdate();
+                });
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -546,6 +724,7 @@ public abstract class BasePlayer implements
                 "timeline size = [" + timeline.getWindowCount() + "], " +
                 "reason = [" + reason + "]");
         if (playQueue == null) return;
+        if (loadController != null) loadController.setLowLatencyLive(isLowLatencyLive && isLive());
 
         switch (reason) {
             case Player.TIMELINE_CHANGE_REASON_RESET: // called after #block
@@ -802,7 +981,14 @@ public abstract class BasePlayer implements
 
         if (getCurrentState() == STATE_BLOCKED) changeState(STATE_BUFFERING);
 
-        simpleExoPlayer.prepare(mediaSource);
+        final StartupTracer startupTracer = StartupTracer.getInstance();
+        startupTracer.mark("player_preparing");
+        startupTracer.beginSection("prepare");
+        try {
+            simpleExoPlayer.prepare(mediaSource);
+        } finally {
+            startupTracer.endSection();
+        }
     }
 
     @Override
@@ -821,13 +1007,6 @@ public abstract class BasePlayer implements
         final int currentPlaylistIndex = simpleExoPlayer.getCurrentWindowIndex();
         final int currentPlaylistSize = simpleExoPlayer.getCurrentTimeline().getWindowCount();
 
-        // when starting playback on the last item when not repeating, maybe auto queue
-        if (info != null && currentPlayQueueIndex == playQueue.size() - 1 &&
-                getRepeatMode() == Player.REPEAT_MODE_OFF &&
-                PlayerHelper.isAutoQueueEnabled(context)) {
-            final PlayQueue autoQueue = PlayerHelper.autoQueueOf(info, playQueue.getStreams());
-            if (autoQueue != null) playQueue.append(autoQueue.getStreams());
-        }
         // If nothing to synchronize
         if (!hasPlayQueueItemChanged && !hasStreamInfoChanged) {
             return;
@@ -835,6 +1014,10 @@ public abstract class BasePlayer implements
 
         currentItem = item;
         currentInfo = info;
+        if (info != null && hasStreamInfoChanged) {
+            queueJournal.recordStreamInfo(item, info);
+            pinCacheKeys(PlayerHelper.cacheKeysOf(info));
+        }
         if (hasPlayQueueItemChanged) {
             // updates only to the stream info should not trigger another view count
             registerView();
@@ -890,6 +1073,16 @@ public abstract class BasePlayer implements
         return null;
     }
 
+    @Override
+    public void onPlaybackPrefetch(@NonNull final PlayQueueItem item,
+                                   @NonNull final StreamInfo info) {
+        if (DEBUG) Log.d(TAG, "Playback - onPlaybackPrefetch() called with " +
+                "item=[" + item.getTitle() + "], url=[" + item.getUrl() + "]");
+        if (mediaPrefetcher == null) return;
+
+        mediaPrefetcher.prefetch(PlayerHelper.cacheKeysOf(info));
+    }
+
     @Override
     public void onPlaybackShutdown() {
         if (DEBUG) Log.d(TAG, "Shutting down...");
@@ -930,6 +1123,7 @@ public abstract class BasePlayer implements
 
     public void onPrepared(boolean playWhenReady) {
         if (DEBUG) Log.d(TAG, "onPrepared() called with: playWhenReady = [" + playWhenReady + "]");
+        StartupTracer.getInstance().mark("player_ready");
         if (playWhenReady) audioReactor.requestAudioFocus();
         changeState(playWhenReady ? STATE_PLAYING : STATE_PAUSED);
     }
@@ -957,6 +1151,7 @@ public abstract class BasePlayer implements
 
         audioReactor.abandonAudioFocus();
         simpleExoPlayer.setPlayWhenReady(false);
+        if (liveLatencyMonitor != null) liveLatencyMonitor.onUserMovedAway();
     }
 
     public void onPlayPause() {
@@ -1022,6 +1217,7 @@ public abstract class BasePlayer implements
         if (DEBUG) Log.d(TAG, "seekBy() called with: position = [" + positionMillis + "]");
         if (simpleExoPlayer == null || positionMillis < 0 ||
                 positionMillis > simpleExoPlayer.getDuration()) return;
+        if (liveLatencyMonitor != null) liveLatencyMonitor.onUserMovedAway();
         simpleExoPlayer.seekTo(positionMillis);
     }
 
@@ -1046,12 +1242,8 @@ public abstract class BasePlayer implements
     //////////////////////////////////////////////////////////////////////////*/
 
     private void registerView() {
-        if (databaseUpdateReactor == null || currentInfo == null) return;
-        databaseUpdateReactor.add(recordManager.onViewed(currentInfo).onErrorComplete()
-                .subscribe(
-                        ignored -> {/* successful */},
-                        error -> Log.e(TAG, "Player onViewed() failure: ", error)
-                ));
+        if (currentInfo == null) return;
+        recordManager.onViewed(currentInfo);
     }
 
     protected void reload() {
@@ -1060,20 +1252,13 @@ public abstract class BasePlayer implements
         }
 
         if (playQueue != null) {
-            playbackManager = new MediaSourceManager(this, playQueue);
+            playbackManager = new MediaSourceManager(this, playQueue, preloadPolicy);
         }
     }
 
     protected void savePlaybackState(final StreamInfo info, final long progress) {
-        if (info == null || databaseUpdateReactor == null) return;
-        final Disposable stateSaver = recordManager.saveStreamState(info, progress)
-                .observeOn(AndroidSchedulers.mainThread())
-                .onErrorComplete()
-                .subscribe(
-                        ignored -> {/* successful */},
-                        error -> Log.e(TAG, "savePlaybackState() failure: ", error)
-                );
-        databaseUpdateReactor.add(stateSaver);
+        if (info == null) return;
+        recordManager.saveStreamState(info, progress);
     }
 
     private void savePlaybackState() {
@@ -1117,16 +1302,42 @@ public abstract class BasePlayer implements
     public boolean isLiveEdge() {
         if (simpleExoPlayer == null || !isLive()) return false;
 
+        final Timeline.Window timelineWindow = getCurrentWindow();
+        return timelineWindow != null &&
+                timelineWindow.getDefaultPositionMs() <= simpleExoPlayer.getCurrentPosition();
+    }
+
+    /**
+     * Returns how far the current position of a live stream is behind real time, by the wall
+     * clock time of the stream if it has one, or else behind the newest media available.
+     * Returns -1 if not playing a live stream.
+     * */
+    public long getLiveLatencyMillis() {
+        if (simpleExoPlayer == null || !isLive()) return -1;
+
+        final Timeline.Window window = getCurrentWindow();
+        if (window == null) return -1;
+
+        final long positionMillis = simpleExoPlayer.getCurrentPosition();
+        if (window.windowStartTimeMs != C.TIME_UNSET) {
+            return Math.max(0, System.currentTimeMillis() - window.windowStartTimeMs -
+                    positionMillis);
+        }
+        final long durationMillis = window.getDurationMs();
+        return durationMillis == C.TIME_UNSET ? -1 : Math.max(0, durationMillis - positionMillis);
+    }
+
+    @Nullable
+    private Timeline.Window getCurrentWindow() {
+        if (simpleExoPlayer == null) return null;
+
         final Timeline currentTimeline = simpleExoPlayer.getCurrentTimeline();
         final int currentWindowIndex = simpleExoPlayer.getCurrentWindowIndex();
         if (currentTimeline.isEmpty() || currentWindowIndex < 0 ||
                 currentWindowIndex >= currentTimeline.getWindowCount()) {
-            return false;
+            return null;
         }
-
-        Timeline.Window timelineWindow = new Timeline.Window();
-        currentTimeline.getWindow(currentWindowIndex, timelineWindow);
-        return timelineWindow.getDefaultPositionMs() <= simpleExoPlayer.getCurrentPosition();
+        return currentTimeline.getWindow(currentWindowIndex, new Timeline.Window());
     }
 
     public boolean isLive() {
@@ -1193,6 +1404,10 @@ public abstract class BasePlayer implements
         return progressUpdateReactor != null && !progressUpdateReactor.isDisposed();
     }
 
+    public long getProgressLoopWakeups() {
+        return progressLoopWakeups;
+    }
+
     public void setRecovery() {
         if (playQueue == null || simpleExoPlayer == null) return;
 
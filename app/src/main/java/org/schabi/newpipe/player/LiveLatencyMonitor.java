@@ -0,0 +1,71 @@
+package org.schabi.newpipe.player;
+
+/**
+ * Records how far behind the live edge a live stream plays, and decides when playback fell
+ * behind far enough that it should catch up by jumping back to the default position.
+ * <br><br>
+ * Playback only falls behind on its own by rebuffering, as the edge moves on while it stalls.
+ * Catching up is therefore only armed once playback reached the default position, and disarmed
+ * when the user seeks or pauses, so streams watched behind the edge on purpose stay there.
+ * */
+/* package-private */ final class LiveLatencyMonitor {
+    private final long catchUpThresholdMillis;
+
+    private boolean isCatchUpArmed = false;
+    private int catchUpCount;
+
+    private long sampleCount;
+    private double latencySumMillis;
+    private long maximumLatencyMillis;
+
+    LiveLatencyMonitor(final long catchUpThresholdMillis) {
+        this.catchUpThresholdMillis = catchUpThresholdMillis;
+    }
+
+    /**
+     * Records the latency of the current position, and returns whether playback should catch
+     * up with the default position.
+     *
+     * @param latencyMillis time behind the live edge, or a negative value if unknown
+     * @param driftMillis   time behind the default position, which the stream starts at
+     * */
+    boolean onProgress(final long latencyMillis, final long driftMillis) {
+        if (latencyMillis >= 0) {
+            sampleCount++;
+            latencySumMillis += latencyMillis;
+            maximumLatencyMillis = Math.max(maximumLatencyMillis, latencyMillis);
+        }
+
+        if (driftMillis <= 0) {
+            isCatchUpArmed = true;
+            return false;
+        }
+        if (!isCatchUpArmed || driftMillis < catchUpThresholdMillis) return false;
+
+        catchUpCount++;
+        return true;
+    }
+
+    /**
+     * Disarms catching up until playback reaches the default position again.
+     * */
+    void onUserMovedAway() {
+        isCatchUpArmed = false;
+    }
+
+    int getCatchUpCount() {
+        return catchUpCount;
+    }
+
+    long getSampleCount() {
+        return sampleCount;
+    }
+
+    long getAverageLatencyMillis() {
+        return sampleCount == 0 ? 0 : (long) (latencySumMillis / sampleCount);
+    }
+
+    long getMaximumLatencyMillis() {
+        return maximumLatencyMillis;
+    }
+}
@@ -104,6 +104,8 @@ public final class MainVideoPlayer extends AppCompatActivity
 
     @Nullable private PlayerState playerState;
     private boolean isInMultiWindow;
+    /** Set when recreated from saved states, which are lost if the process was killed since. */
+    private boolean isRecreated;
 
     /*//////////////////////////////////////////////////////////////////////////
     // Activity LifeCycle
@@ -129,6 +131,7 @@ public final class MainVideoPlayer extends AppCompatActivity
         playerImpl.setup(findViewById(android.R.id.content));
 
         if (savedInstanceState != null && savedInstanceState.get(KEY_SAVED_STATE) != null) {
+            isRecreated = true;
             return; // We have saved states, stop here to restore it
         }
 
@@ -178,7 +181,10 @@ public final class MainVideoPlayer extends AppCompatActivity
             playerImpl.initPlayback(playerState.getPlayQueue(), playerState.getRepeatMode(),
                     playerState.getPlaybackSpeed(), playerState.getPlaybackPitch(),
                     playerState.wasPlaying());
+        } else if (isRecreated) {
+            playerImpl.restoreJournaledSession();
         }
+        isRecreated = false;
     }
 
     @Override
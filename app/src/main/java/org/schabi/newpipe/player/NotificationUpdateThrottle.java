@@ -0,0 +1,82 @@
+package org.schabi.newpipe.player;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which progress updates of a player notification are worth posting, and counts the
+ * posts of the notification.
+ * <br><br>
+ * Every post is a call into the system server, which parcels the whole notification again,
+ * cover image included. Progress updates are therefore only posted when they change what the
+ * notification shows, which is whole seconds, and no more often than a minimum interval.
+ * As the ticks of the progress loop are not exactly on time, the interval is shortened by
+ * half a tick, so a tick arriving a little early is not dropped for a whole tick.
+ * */
+/* package-private */ final class NotificationUpdateThrottle {
+    private final long minimumProgressIntervalMillis;
+    private final long progressSlackMillis;
+
+    private long shownProgressSeconds = -1;
+    private long shownDurationSeconds = -1;
+    private long lastProgressPostMillis;
+    private boolean hasPostedProgress = false;
+
+    private long postCount;
+    private long firstPostMillis;
+    private long lastPostMillis;
+
+    /**
+     * @param minimumProgressIntervalMillis the minimum interval between progress posts
+     * @param progressTickMillis the longest interval of the loop reporting the progress
+     * */
+    NotificationUpdateThrottle(final long minimumProgressIntervalMillis,
+                               final long progressTickMillis) {
+        this.minimumProgressIntervalMillis = minimumProgressIntervalMillis;
+        this.progressSlackMillis = progressTickMillis / 2;
+    }
+
+    /**
+     * Returns whether the given progress should be posted, and if so, takes it as shown.
+     * */
+    boolean shouldPostProgress(final int progressMillis, final int durationMillis,
+                               final long nowMillis) {
+        final long progressSeconds = TimeUnit.MILLISECONDS.toSeconds(progressMillis);
+        final long durationSeconds = TimeUnit.MILLISECONDS.toSeconds(durationMillis);
+        if (progressSeconds == shownProgressSeconds && durationSeconds == shownDurationSeconds) {
+            return false;
+        }
+        if (hasPostedProgress &&
+                nowMillis - lastProgressPostMillis <
+                        minimumProgressIntervalMillis - progressSlackMillis) {
+            return false;
+        }
+
+        shownProgressSeconds = progressSeconds;
+        shownDurationSeconds = durationSeconds;
+        lastProgressPostMillis = nowMillis;
+        hasPostedProgress = true;
+        return true;
+    }
+
+    /**
+     * Counts a post of the notification, whatever it changed.
+     * */
+    void onPosted(final long nowMillis) {
+        if (postCount++ == 0) firstPostMillis = nowMillis;
+        lastPostMillis = nowMillis;
+    }
+
+    long getPostCount() {
+        return postCount;
+    }
+
+    /**
+     * Returns the posts per minute between the first and the last post,
+     * or 0 if there were less than two.
+     * */
+    double getPostsPerMinute() {
+        final long elapsedMillis = lastPostMillis - firstPostMillis;
+        if (postCount < 2 || elapsedMillis <= 0) return 0;
+        return (postCount - 1) * (double) TimeUnit.MINUTES.toMillis(1) / elapsedMillis;
+    }
+}
@@ -148,9 +148,11 @@ public final class PopupVideoPlayer extends Service {
         if (playerImpl.getPlayer() == null) initPopup();
         if (!playerImpl.isPlaying()) playerImpl.getPlayer().setPlayWhenReady(true);
 
+        // Sticky services are restarted without an intent after their process was killed
+        if (intent == null) playerImpl.restoreJournaledSession();
         playerImpl.handleIntent(intent);
 
-        return START_NOT_STICKY;
+        return START_STICKY;
     }
 
     @Override
@@ -370,6 +372,7 @@ public final class PopupVideoPlayer extends Service {
 
     protected class VideoPlayerImpl extends VideoPlayer implements View.OnLayoutChangeListener {
         private TextView resizingIndicator;
+        private boolean isScreenOn = true;
         private ImageButton fullScreenButton;
         private ImageView videoPlayPause;
 
@@ -503,6 +506,12 @@ public final class PopupVideoPlayer extends Service {
             updatePlayback();
         }
 
+        @Override
+        protected int getProgressLoopIntervalMillis() {
+            // The popup does not show progress in its notification
+            return isScreenOn ? PROGRESS_LOOP_INTERVAL_MILLIS : IDLE_PROGRESS_LOOP_INTERVAL_MILLIS;
+        }
+
         @Override
         public void onUpdateProgress(int currentProgress, int duration, int bufferPercent) {
             updateProgress(currentProgress, duration, bufferPercent);
@@ -631,10 +640,10 @@ public final class PopupVideoPlayer extends Service {
                     onRepeatClicked();
                     break;
                 case Intent.ACTION_SCREEN_ON:
-                    enableVideoRenderer(true);
+                    onScreenOnOff(true);
                     break;
                 case Intent.ACTION_SCREEN_OFF:
-                    enableVideoRenderer(false);
+                    onScreenOnOff(false);
                     break;
             }
         }
@@ -715,6 +724,13 @@ public final class PopupVideoPlayer extends Service {
         // Utils
         //////////////////////////////////////////////////////////////////////////*/
 
+        private void onScreenOnOff(final boolean on) {
+            if (DEBUG) Log.d(TAG, "onScreenOnOff() called with: on = [" + on + "]");
+            isScreenOn = on;
+            enableVideoRenderer(on);
+            updateProgressLoop();
+        }
+
         /*package-private*/ void enableVideoRenderer(final boolean enable) {
             final int videoRendererIndex = getRendererIndex(C.TRACK_TYPE_VIDEO);
             if (trackSelector != null && videoRendererIndex != RENDERER_UNAVAILABLE) {
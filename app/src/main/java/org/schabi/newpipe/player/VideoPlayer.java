@@ -58,6 +58,7 @@ import com.google.android.exoplayer2.text.CaptionStyleCompat;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
 import com.google.android.exoplayer2.ui.SubtitleView;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
 import com.google.android.exoplayer2.video.VideoListener;
 
 import org.schabi.newpipe.R;
@@ -68,12 +69,21 @@ import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.extractor.stream.StreamType;
 import org.schabi.newpipe.extractor.stream.VideoStream;
 import org.schabi.newpipe.player.helper.PlayerHelper;
+import org.schabi.newpipe.player.helper.StartupTracer;
 import org.schabi.newpipe.player.playqueue.PlayQueueItem;
 import org.schabi.newpipe.util.AnimationUtils;
 import org.schabi.newpipe.util.ListHelper;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.observers.DisposableCompletableObserver;
 
 import static com.google.android.exoplayer2.C.SELECTION_FLAG_AUTOSELECT;
 import static com.google.android.exoplayer2.C.TIME_UNSET;
@@ -105,9 +115,33 @@ public abstract class VideoPlayer extends BasePlayer
     public static final int DEFAULT_CONTROLS_DURATION = 300; // 300 millis
     public static final int DEFAULT_CONTROLS_HIDE_TIME = 2000;  // 2 Seconds
 
+    /** Queue items kept apart by the resolution chosen to start them with. */
+    private static final int MAXIMUM_STARTING_RESOLUTIONS = 32;
+
     private ArrayList<VideoStream> availableStreams;
     private int selectedStreamIndex;
 
+    private final Map<String, String> startingResolutions =
+            Collections.synchronizedMap(new LinkedHashMap<String, String>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAXIMUM_STARTING_RESOLUTIONS;
+                }
+            });
+    private volatile String lastStartingResolution;
+
+    /** Seconds of the default resolution cached before a fast started item switches to it. */
+    private static final int FAST_START_WARM_SECONDS = 10;
+    private static final long FAST_START_MAXIMUM_WARM_BYTES = 8 * 1024 * 1024;
+
+    @Nullable private volatile FastStart pendingFastStart;
+    @Nullable private volatile PlayQueueItem fastStartedItem;
+    private final SerialDisposable fastStartReactor = new SerialDisposable();
+
+    private final CompositeDisposable subtitlePrefetchReactor = new CompositeDisposable();
+    /** Caption language chosen last, kept apart from the track selector for the loaders. */
+    @Nullable private volatile String captionLanguage;
+
     protected String playbackQuality;
 
     protected boolean wasPlaying = false;
@@ -243,6 +277,9 @@ public abstract class VideoPlayer extends BasePlayer
         if (Build.VERSION.SDK_INT >= 21) {
             trackSelector.setTunnelingAudioSessionId(C.generateAudioSessionIdV21(context));
         }
+
+        // Captions in the language chosen last are prefetched, but not turned on by it
+        captionLanguage = PlayerHelper.getCaptionLanguage(context);
     }
 
     @Override
@@ -299,6 +336,7 @@ public abstract class VideoPlayer extends BasePlayer
             final int textRendererIndex = getRendererIndex(C.TRACK_TYPE_TEXT);
             if (trackSelector != null && textRendererIndex != RENDERER_UNAVAILABLE) {
                 trackSelector.setRendererDisabled(textRendererIndex, true);
+                setCaptionLanguage(null);
             }
             return true;
         });
@@ -313,12 +351,19 @@ public abstract class VideoPlayer extends BasePlayer
                 if (trackSelector != null && textRendererIndex != RENDERER_UNAVAILABLE) {
                     trackSelector.setPreferredTextLanguage(captionLanguage);
                     trackSelector.setRendererDisabled(textRendererIndex, false);
+                    setCaptionLanguage(captionLanguage);
                 }
                 return true;
             });
         }
         captionPopupMenu.setOnDismissListener(this);
     }
+
+    private void setCaptionLanguage(@Nullable final String captionLanguage) {
+        this.captionLanguage = captionLanguage;
+        PlayerHelper.setCaptionLanguage(context, captionLanguage);
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // Playback Listener
     //////////////////////////////////////////////////////////////////////////*/
@@ -327,6 +372,148 @@ public abstract class VideoPlayer extends BasePlayer
 
     protected abstract int getOverrideResolutionIndex(final List<VideoStream> sortedVideos, final String playbackQuality);
 
+    /**
+     * Chooses the stream to start an item with when no quality was selected, which is the default
+     * resolution lowered to what the estimated bandwidth carries. Items are chosen for as they
+     * load, so the resolution follows the network from one item to the next.
+     * */
+    private int getStartingResolutionIndex(@NonNull final StreamInfo info,
+                                           @NonNull final List<VideoStream> sortedVideos) {
+        final int defaultIndex = getDefaultResolutionIndex(sortedVideos);
+        final long bitrateEstimate = bandwidthMeter == null ?
+                BandwidthMeter.NO_ESTIMATE : bandwidthMeter.getBitrateEstimate();
+        final int index = ListHelper.getBandwidthLimitedResolutionIndex(defaultIndex,
+                sortedVideos, bitrateEstimate, PlayerHelper.getPlaybackStartBufferMs(context));
+        if (index < 0 || index >= sortedVideos.size()) return index;
+
+        final String resolution = sortedVideos.get(index).getResolution();
+        startingResolutions.put(info.getUrl(), resolution);
+        if (DEBUG) {
+            Log.d(TAG, "Starting [" + info.getName() + "] at resolution=[" + resolution +
+                    "], default=[" + sortedVideos.get(defaultIndex).getResolution() +
+                    "], estimate=[" + bitrateEstimate + "], estimated bitrate=[" +
+                    ListHelper.getEstimatedBitrate(sortedVideos.get(index)) + "]");
+            if (lastStartingResolution != null && !lastStartingResolution.equals(resolution)) {
+                Log.d(TAG, "Switching starting resolution from [" + lastStartingResolution +
+                        "] to [" + resolution + "]");
+            }
+        }
+        lastStartingResolution = resolution;
+        return index;
+    }
+
+    /**
+     * Returns the index of a lower resolution to start the current item with, if it is played
+     * from the start and fast start is enabled, or the given index otherwise.
+     * <br><br>
+     * The stream at the given index is fetched into the cache once playback runs, after which
+     * the item is reloaded at that resolution, see {@link #maybeWarmFastStart()}.
+     * */
+    private int getFastStartIndex(@NonNull final PlayQueueItem item,
+                                  @NonNull final StreamInfo info,
+                                  @NonNull final List<VideoStream> sortedVideos,
+                                  final int targetIndex) {
+        if (targetIndex < 0 || targetIndex >= sortedVideos.size() ||
+                !PlayerHelper.isFastStartEnabled(context) || item == fastStartedItem ||
+                item.getRecoveryPosition() != PlayQueueItem.RECOVERY_UNSET ||
+                playQueue == null || playQueue.getItem() != item) {
+            return targetIndex;
+        }
+
+        final int fastStartIndex = ListHelper.getFastStartResolutionIndex(targetIndex, sortedVideos);
+        if (fastStartIndex == targetIndex) return targetIndex;
+
+        final VideoStream target = sortedVideos.get(targetIndex);
+        final String fastStartResolution = sortedVideos.get(fastStartIndex).getResolution();
+        final long targetBitrate = ListHelper.getEstimatedBitrate(target);
+        final long warmBytes = Math.min(FAST_START_MAXIMUM_WARM_BYTES,
+                targetBitrate / 8 * FAST_START_WARM_SECONDS);
+        final long warmMillis = warmBytes * 8 * 1000 / targetBitrate;
+        if (DEBUG) Log.d(TAG, "Fast starting [" + info.getName() + "] at resolution=[" +
+                fastStartResolution + "], switching to=[" + target.getResolution() + "]");
+
+        fastStartedItem = item;
+        pendingFastStart = new FastStart(item, PlayerHelper.cacheKeyOf(info, target),
+                Uri.parse(target.getUrl()), warmBytes, warmMillis);
+        startingResolutions.put(info.getUrl(), fastStartResolution);
+        return fastStartIndex;
+    }
+
+    /**
+     * Starts caching the stream a fast started item switches to, once it plays, so loading
+     * the stream does not hold up the first frame.
+     * */
+    private void maybeWarmFastStart() {
+        final FastStart fastStart = pendingFastStart;
+        if (fastStart == null || mediaPrefetcher == null) return;
+        pendingFastStart = null;
+        if (playQueue == null || playQueue.getItem() != fastStart.item) return;
+
+        fastStartReactor.set(mediaPrefetcher.warm(fastStart.cacheKey, fastStart.uri,
+                fastStart.warmBytes)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> onFastStartWarmed(fastStart), throwable -> {
+                    if (DEBUG) Log.d(TAG, "Unable to warm fast start key = [" +
+                            fastStart.cacheKey + "]", throwable);
+                }));
+    }
+
+    private void onFastStartWarmed(@NonNull final FastStart fastStart) {
+        final PlayQueueItem item = fastStart.item;
+        if (playQueue == null || playQueue.getItem() != item || playbackQuality != null) return;
+        // Past the warmed opening, switching would stall on the network after all
+        if (simpleExoPlayer == null ||
+                simpleExoPlayer.getCurrentPosition() >= fastStart.warmMillis) {
+            if (DEBUG) Log.d(TAG, "Not switching fast started [" + item.getTitle() +
+                    "], playback is past the warmed range");
+            return;
+        }
+        if (DEBUG) Log.d(TAG, "Switching fast started [" + item.getTitle() + "] to default resolution");
+
+        // Switched the way the quality menu does, with the opening now read from the cache
+        setRecovery();
+        reload();
+    }
+
+    /**
+     * Caches the caption file of a source being built, so turning the captions on reads it
+     * from disk instead of stalling playback while it downloads.
+     * <br><br>
+     * May be called from any thread. Prefetches are only kept until they are done, as a
+     * source is built for every item played.
+     * */
+    private void prefetchSubtitles(@NonNull final String cacheKey, @NonNull final Uri uri) {
+        if (DEBUG) Log.d(TAG, "prefetchSubtitles() called with: cacheKey = [" + cacheKey + "]");
+        final DisposableCompletableObserver prefetch = new DisposableCompletableObserver() {
+            @Override
+            public void onComplete() {
+                subtitlePrefetchReactor.remove(this);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (DEBUG) Log.d(TAG, "Unable to prefetch subtitles key = [" +
+                        cacheKey + "]", throwable);
+                subtitlePrefetchReactor.remove(this);
+            }
+        };
+        // Added before subscribing, so a prefetch done right away is not added once removed
+        subtitlePrefetchReactor.add(prefetch);
+        dataSource.prefetchSubtitles(cacheKey, uri).subscribe(prefetch);
+    }
+
+    /**
+     * Returns the index of the stream an item was started with, for the quality menu.
+     * */
+    private int getStartedResolutionIndex(@NonNull final StreamInfo info,
+                                          @NonNull final List<VideoStream> sortedVideos) {
+        final String resolution = startingResolutions.get(info.getUrl());
+        for (int i = 0; resolution != null && i < sortedVideos.size(); i++) {
+            if (sortedVideos.get(i).getResolution().equals(resolution)) return i;
+        }
+        return getDefaultResolutionIndex(sortedVideos);
+    }
+
     protected void onMetadataChanged(@NonNull final PlayQueueItem item,
                                      @Nullable final StreamInfo info,
                                      final int newPlayQueueIndex,
@@ -362,7 +549,7 @@ public abstract class VideoPlayer extends BasePlayer
                         info.getVideoStreams(), info.getVideoOnlyStreams(), false);
                 availableStreams = new ArrayList<>(videos);
                 if (playbackQuality == null) {
-                    selectedStreamIndex = getDefaultResolutionIndex(videos);
+                    selectedStreamIndex = getStartedResolutionIndex(info, videos);
                 } else {
                     selectedStreamIndex = getOverrideResolutionIndex(videos, getPlaybackQuality());
                 }
@@ -395,11 +582,14 @@ public abstract class VideoPlayer extends BasePlayer
         if (videos.isEmpty()) {
             index = -1;
         } else if (playbackQuality == null) {
-            index = getDefaultResolutionIndex(videos);
+            index = getStartingResolutionIndex(info, videos);
         } else {
             index = getOverrideResolutionIndex(videos, getPlaybackQuality());
         }
-        final VideoStream video = index >= 0 && index < videos.size() ? videos.get(index) : null;
+        final int startIndex = playbackQuality == null ?
+                getFastStartIndex(item, info, videos, index) : index;
+        final VideoStream video = startIndex >= 0 && startIndex < videos.size() ?
+                videos.get(startIndex) : null;
         if (video != null) {
             final MediaSource streamSource = buildMediaSource(video.getUrl(),
                     PlayerHelper.cacheKeyOf(info, video),
@@ -424,15 +614,21 @@ public abstract class VideoPlayer extends BasePlayer
         if (mediaSources.isEmpty()) return null;
         // Below are auxiliary media sources
 
-        // Create subtitle sources
+        // Create subtitle sources, prefetching those of the language chosen last
+        final String preferredLanguage = captionLanguage;
         for (final Subtitles subtitle : info.getSubtitles()) {
             final String mimeType = PlayerHelper.mimeTypesOf(subtitle.getFileType());
             if (mimeType == null) continue;
 
+            final String captionLanguage = PlayerHelper.captionLanguageOf(context, subtitle);
+            final String cacheKey = PlayerHelper.cacheKeyOf(info, subtitle);
+            final Uri uri = Uri.parse(subtitle.getURL());
+            if (captionLanguage.equals(preferredLanguage)) prefetchSubtitles(cacheKey, uri);
+
             final Format textFormat = Format.createTextSampleFormat(null, mimeType,
-                    SELECTION_FLAG_AUTOSELECT, PlayerHelper.captionLanguageOf(context, subtitle));
-            final MediaSource textSource = dataSource.getSampleMediaSourceFactory()
-                    .createMediaSource(Uri.parse(subtitle.getURL()), textFormat, TIME_UNSET);
+                    SELECTION_FLAG_AUTOSELECT, captionLanguage);
+            final MediaSource textSource = dataSource.getSubtitleMediaSourceFactory(cacheKey)
+                    .createMediaSource(uri, textFormat, TIME_UNSET);
             mediaSources.add(textSource);
         }
 
@@ -481,6 +677,8 @@ public abstract class VideoPlayer extends BasePlayer
 
         animateView(currentDisplaySeek, AnimationUtils.Type.SCALE_AND_ALPHA, false, 200);
         animateView(endScreen, false, 0);
+
+        maybeWarmFastStart();
     }
 
     @Override
@@ -541,6 +739,7 @@ public abstract class VideoPlayer extends BasePlayer
 
     @Override
     public void onRenderedFirstFrame() {
+        StartupTracer.getInstance().end("first_frame");
         animateView(surfaceForeground, false, 100);
     }
 
@@ -599,6 +798,16 @@ public abstract class VideoPlayer extends BasePlayer
         super.onPrepared(playWhenReady);
     }
 
+    @Override
+    public void destroyPlayer() {
+        super.destroyPlayer();
+        // Reactors are only cleared, as players are set up again after being destroyed
+        fastStartReactor.set(null);
+        pendingFastStart = null;
+        fastStartedItem = null;
+        subtitlePrefetchReactor.clear();
+    }
+
     @Override
     public void destroy() {
         super.destroy();
@@ -1010,4 +1219,22 @@ public abstract class VideoPlayer extends BasePlayer
     public TextView getCaptionTextView() {
         return captionTextView;
     }
+
+    private static final class FastStart {
+        @NonNull final PlayQueueItem item;
+        @NonNull final String cacheKey;
+        @NonNull final Uri uri;
+        final long warmBytes;
+        /** Playback time of the target stream covered by the warmed bytes. */
+        final long warmMillis;
+
+        FastStart(@NonNull final PlayQueueItem item, @NonNull final String cacheKey,
+                  @NonNull final Uri uri, final long warmBytes, final long warmMillis) {
+            this.item = item;
+            this.cacheKey = cacheKey;
+            this.uri = uri;
+            this.warmBytes = warmBytes;
+            this.warmMillis = warmMillis;
+        }
+    }
 }
@@ -1,43 +1,111 @@
 package org.schabi.newpipe.player.helper;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.NonNull;
+import android.support.v4.app.ActivityManagerCompat;
+import android.util.Log;
 
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.Renderer;
 import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Util;
+
+import org.schabi.newpipe.MainActivity;
 
 import static com.google.android.exoplayer2.DefaultLoadControl.DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS;
 import static com.google.android.exoplayer2.DefaultLoadControl.DEFAULT_TARGET_BUFFER_BYTES;
 
-public class LoadController implements LoadControl {
+/**
+ * Decides how far ahead the player buffers, by duration and by bytes held in memory.
+ * <br><br>
+ * The buffer durations from the preferences are stretched on networks whose throughput
+ * fluctuates, up to {@link #MAXIMUM_VARIATION_FACTOR} times. The bytes needed to hold them are
+ * worked out from the bitrate of the selected tracks, so audio only streams do not reserve the
+ * memory of a video, and are capped to a share of the app's heap, where the buffer lives. Once
+ * the system runs low on memory, that share is cut for the rest of the session.
+ * <br><br>
+ * Low latency live streams never have more buffered than their gap to the live edge, so their
+ * buffer is kept to that, and does not grow with the variation of the network.
+ * */
+public class LoadController implements LoadControl, ComponentCallbacks2 {
 
     public static final String TAG = "LoadController";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    /** Share of the heap the buffer may take up, and while the system is low on memory. */
+    private static final float MEMORY_SHARE = 0.25f;
+    private static final float LOW_MEMORY_SHARE = 0.1f;
+    /** Headroom over the nominal bitrate of tracks, for bitrate peaks and allocator rounding. */
+    private static final float BITRATE_HEADROOM = 1.25f;
+    /** Buffer durations grow with the variation of the network up to this factor. */
+    private static final float MAXIMUM_VARIATION_FACTOR = 2f;
+    private static final int MINIMUM_TARGET_BUFFER_BYTES = 16 * C.DEFAULT_BUFFER_SEGMENT_SIZE;
+    private static final long LOW_LATENCY_LIVE_MINIMUM_BUFFER_US = C.MICROS_PER_SECOND;
+    private static final long LOW_LATENCY_LIVE_MAXIMUM_BUFFER_US =
+            PlayerDataSource.LOW_LATENCY_LIVE_STREAM_EDGE_GAP_MILLIS * 1000L;
+
+    @NonNull private final Context context;
+    @NonNull private final PersistentBandwidthMeter bandwidthMeter;
 
     private final long initialPlaybackBufferUs;
-    private final LoadControl internalLoadControl;
+    private final long minimumPlaybackBufferUs;
+    private final long optimalPlaybackBufferUs;
+    private final long memoryBudgetBytes;
+    private final long lowMemoryBudgetBytes;
+
+    @NonNull private final DefaultAllocator allocator;
+    @NonNull private final LoadControl internalLoadControl;
+
+    private volatile boolean isLowMemory;
+    private volatile boolean isLowLatencyLive;
+    /** Bitrate of the selected tracks, and the default buffer size of those without one. */
+    private volatile long selectedBitrate;
+    private volatile long unknownBitrateBufferBytes;
+    private boolean isBuffering;
 
     /*//////////////////////////////////////////////////////////////////////////
     // Default Load Control
     //////////////////////////////////////////////////////////////////////////*/
 
-    public LoadController(final Context context) {
-        this(PlayerHelper.getPlaybackStartBufferMs(context),
+    public LoadController(@NonNull final Context context,
+                          @NonNull final PersistentBandwidthMeter bandwidthMeter) {
+        this(context, bandwidthMeter,
+                PlayerHelper.getPlaybackStartBufferMs(context),
                 PlayerHelper.getPlaybackMinimumBufferMs(context),
                 PlayerHelper.getPlaybackOptimalBufferMs(context));
     }
 
-    private LoadController(final int initialPlaybackBufferMs,
+    private LoadController(@NonNull final Context context,
+                           @NonNull final PersistentBandwidthMeter bandwidthMeter,
+                           final int initialPlaybackBufferMs,
                            final int minimumPlaybackbufferMs,
                            final int optimalPlaybackBufferMs) {
-        this.initialPlaybackBufferUs = initialPlaybackBufferMs * 1000;
+        this.context = context.getApplicationContext();
+        this.bandwidthMeter = bandwidthMeter;
+        this.initialPlaybackBufferUs = initialPlaybackBufferMs * 1000L;
+        this.minimumPlaybackBufferUs = minimumPlaybackbufferMs * 1000L;
+        this.optimalPlaybackBufferUs = optimalPlaybackBufferMs * 1000L;
 
-        final DefaultAllocator allocator = new DefaultAllocator(true,
-                C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        final ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final long heapBytes = activityManager == null ? Runtime.getRuntime().maxMemory() :
+                activityManager.getMemoryClass() * 1024L * 1024L;
+        this.memoryBudgetBytes = (long) (heapBytes * MEMORY_SHARE);
+        this.lowMemoryBudgetBytes = (long) (heapBytes * LOW_MEMORY_SHARE);
+        this.isLowMemory = activityManager != null &&
+                ActivityManagerCompat.isLowRamDevice(activityManager);
+
+        allocator = new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
 
         internalLoadControl = new DefaultLoadControl(allocator,
                 /*minBufferMs=*/minimumPlaybackbufferMs,
@@ -45,6 +113,8 @@ public class LoadController implements LoadControl {
                 /*bufferForPlaybackMs=*/initialPlaybackBufferMs,
                 /*bufferForPlaybackAfterRebufferMs=*/initialPlaybackBufferMs,
                 DEFAULT_TARGET_BUFFER_BYTES, DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS);
+
+        this.context.registerComponentCallbacks(this);
     }
 
     /*//////////////////////////////////////////////////////////////////////////
@@ -54,22 +124,47 @@ public class LoadController implements LoadControl {
     @Override
     public void onPrepared() {
         internalLoadControl.onPrepared();
+        resetSelection();
     }
 
     @Override
     public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroupArray,
                                  TrackSelectionArray trackSelectionArray) {
         internalLoadControl.onTracksSelected(renderers, trackGroupArray, trackSelectionArray);
+
+        long bitrate = 0;
+        long unknownBitrateBytes = 0;
+        for (int i = 0; i < renderers.length; i++) {
+            final TrackSelection selection = trackSelectionArray.get(i);
+            if (selection == null) continue;
+
+            // Adaptive selections may switch up, so the highest bitrate among them is reserved
+            int maximumBitrate = Format.NO_VALUE;
+            for (int j = 0; j < selection.length(); j++) {
+                maximumBitrate = Math.max(maximumBitrate, selection.getFormat(j).bitrate);
+            }
+            if (maximumBitrate == Format.NO_VALUE) {
+                unknownBitrateBytes += Util.getDefaultBufferSize(renderers[i].getTrackType());
+            } else {
+                bitrate += maximumBitrate;
+            }
+        }
+        selectedBitrate = bitrate;
+        unknownBitrateBufferBytes = unknownBitrateBytes;
+        allocator.setTargetBufferSize(getTargetBufferBytes(getMaximumBufferUs()));
     }
 
     @Override
     public void onStopped() {
         internalLoadControl.onStopped();
+        resetSelection();
     }
 
     @Override
     public void onReleased() {
         internalLoadControl.onReleased();
+        resetSelection();
+        context.unregisterComponentCallbacks(this);
     }
 
     @Override
@@ -89,7 +184,14 @@ public class LoadController implements LoadControl {
 
     @Override
     public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
-        return internalLoadControl.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+        final long maximumBufferUs = getMaximumBufferUs();
+        final long minimumBufferUs = getMinimumBufferUs();
+        final boolean isTargetBufferSizeReached = allocator.getTotalBytesAllocated() >=
+                getTargetBufferBytes(maximumBufferUs);
+
+        isBuffering = !isTargetBufferSizeReached && (bufferedDurationUs < minimumBufferUs ||
+                (bufferedDurationUs <= maximumBufferUs && isBuffering));
+        return isBuffering;
     }
 
     @Override
@@ -99,6 +201,82 @@ public class LoadController implements LoadControl {
                 this.initialPlaybackBufferUs * playbackSpeed;
         final boolean isInternalStartingPlayback = internalLoadControl.shouldStartPlayback(
                 bufferedDurationUs, playbackSpeed, rebuffering);
-        return isInitialPlaybackBufferFilled || isInternalStartingPlayback;
+        // Loading stops at the memory cap, which must not keep playback from starting
+        final boolean isTargetBufferSizeReached = allocator.getTotalBytesAllocated() >=
+                getTargetBufferBytes(getMaximumBufferUs());
+        return isInitialPlaybackBufferFilled || isInternalStartingPlayback ||
+                isTargetBufferSizeReached;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Buffer Policy
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Sets whether a live stream is played at low latency, see {@link PlayerDataSource}.
+     * */
+    public void setLowLatencyLive(final boolean isLowLatencyLive) {
+        if (this.isLowLatencyLive == isLowLatencyLive) return;
+        if (DEBUG) Log.d(TAG, "setLowLatencyLive() called with: " +
+                "isLowLatencyLive = [" + isLowLatencyLive + "]");
+        this.isLowLatencyLive = isLowLatencyLive;
+    }
+
+    private void resetSelection() {
+        selectedBitrate = 0;
+        unknownBitrateBufferBytes = 0;
+        isBuffering = false;
+    }
+
+    private float getVariationFactor() {
+        final double variation = Math.min(1, bandwidthMeter.getBitrateVariation());
+        return (float) (1 + variation * (MAXIMUM_VARIATION_FACTOR - 1));
     }
+
+    private long getMinimumBufferUs() {
+        if (isLowLatencyLive) {
+            return Math.min(minimumPlaybackBufferUs, LOW_LATENCY_LIVE_MINIMUM_BUFFER_US);
+        }
+        return (long) (minimumPlaybackBufferUs * getVariationFactor());
+    }
+
+    private long getMaximumBufferUs() {
+        if (isLowLatencyLive) {
+            return Math.min(optimalPlaybackBufferUs, LOW_LATENCY_LIVE_MAXIMUM_BUFFER_US);
+        }
+        return (long) (optimalPlaybackBufferUs * getVariationFactor());
+    }
+
+    private int getTargetBufferBytes(final long maximumBufferUs) {
+        final long bitrateBytes = (long) (selectedBitrate / 8 * BITRATE_HEADROOM *
+                maximumBufferUs / C.MICROS_PER_SECOND);
+        final long budget = isLowMemory ? lowMemoryBudgetBytes : memoryBudgetBytes;
+        final long target = Math.min(bitrateBytes + unknownBitrateBufferBytes, budget);
+        return (int) Math.max(MINIMUM_TARGET_BUFFER_BYTES, target);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Memory Callbacks
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public void onTrimMemory(int level) {
+        // Players keep running once their UI is hidden, so that alone is no reason to trim
+        if (level < TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_UI_HIDDEN) return;
+        onLowMemory();
+    }
+
+    @Override
+    public void onLowMemory() {
+        if (isLowMemory) return;
+        if (DEBUG) Log.d(TAG, "onLowMemory() called, limiting buffer to " +
+                lowMemoryBudgetBytes + " bytes");
+
+        isLowMemory = true;
+        // Trims the free allocations held by the allocator down to the new target
+        allocator.setTargetBufferSize(getTargetBufferBytes(getMaximumBufferUs()));
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
 }
@@ -0,0 +1,216 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import org.schabi.newpipe.MainActivity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the media cache of all players in the process.
+ * <br><br>
+ * A {@link SimpleCache} must be the only one on its directory, so all players share this one.
+ * Besides handing it to the data sources, the manager keeps track of how many bytes were
+ * served from the cache and from the network, and lets players pin the cache keys, as made by
+ * {@link PlayerHelper#cacheKeyOf}, of what they are playing, so seeking back and watching again
+ * is served from disk instead of being evicted by items loaded ahead.
+ * */
+public final class MediaCacheManager {
+    private static final String TAG = "MediaCacheManager";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final String CACHE_FOLDER_NAME = "exoplayer";
+    /** Pinned keys may keep at most this share of the cache from being evicted. */
+    private static final double MAXIMUM_PINNED_SHARE = 0.5;
+
+    private static MediaCacheManager instance;
+
+    @NonNull private final File cacheDirectory;
+    @NonNull private final SimpleCache cache;
+    @NonNull private final PinningCacheEvictor evictor;
+    private final long maximumFileSize;
+
+    @NonNull private final AtomicLong cacheBytesRead = new AtomicLong();
+    @NonNull private final AtomicLong networkBytesRead = new AtomicLong();
+
+    private MediaCacheManager(@NonNull final Context context) {
+        final long maximumCacheSize = PlayerHelper.getPreferredCacheSize(context);
+        this.maximumFileSize = PlayerHelper.getPreferredFileSize(context);
+
+        final File parent = context.getExternalCacheDir() != null ?
+                context.getExternalCacheDir() : context.getCacheDir();
+        this.cacheDirectory = new File(parent, CACHE_FOLDER_NAME);
+        if (!cacheDirectory.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDirectory.mkdir();
+        }
+
+        this.evictor = new PinningCacheEvictor(maximumCacheSize,
+                (long) (maximumCacheSize * MAXIMUM_PINNED_SHARE));
+        this.cache = new SimpleCache(cacheDirectory, evictor);
+    }
+
+    @NonNull
+    public static synchronized MediaCacheManager getInstance(@NonNull final Context context) {
+        if (instance == null) instance = new MediaCacheManager(context.getApplicationContext());
+        return instance;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Data Sources
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @NonNull
+    public Cache getCache() {
+        return cache;
+    }
+
+    public long getMaximumFileSize() {
+        return maximumFileSize;
+    }
+
+    /**
+     * Counts the bytes read from the cache by a {@link CacheDataSource} it is given to.
+     * */
+    @NonNull
+    public CacheDataSource.EventListener getCacheReadListener() {
+        return (cacheSizeBytes, cachedBytesRead) -> cacheBytesRead.addAndGet(cachedBytesRead);
+    }
+
+    /**
+     * Wraps the given listener of network sources to count the bytes they read.
+     * */
+    @NonNull
+    public TransferListener<DataSource> countingNetworkReads(
+            @NonNull final TransferListener<? super DataSource> listener) {
+        return new TransferListener<DataSource>() {
+            @Override
+            public void onTransferStart(DataSource source, DataSpec dataSpec) {
+                listener.onTransferStart(source, dataSpec);
+            }
+
+            @Override
+            public void onBytesTransferred(DataSource source, int bytesTransferred) {
+                networkBytesRead.addAndGet(bytesTransferred);
+                listener.onBytesTransferred(source, bytesTransferred);
+            }
+
+            @Override
+            public void onTransferEnd(DataSource source) {
+                listener.onTransferEnd(source);
+            }
+        };
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Statistics
+    //////////////////////////////////////////////////////////////////////////*/
+
+    public long getCacheBytesRead() {
+        return cacheBytesRead.get();
+    }
+
+    public long getNetworkBytesRead() {
+        return networkBytesRead.get();
+    }
+
+    /**
+     * Returns the share of bytes played which were read from the cache,
+     * or 0 if nothing was played yet.
+     * */
+    public double getHitRatio() {
+        final long fromCache = cacheBytesRead.get();
+        final long total = fromCache + networkBytesRead.get();
+        return total == 0 ? 0 : (double) fromCache / total;
+    }
+
+    public long getCacheSpace() {
+        return cache.getCacheSpace();
+    }
+
+    @NonNull
+    public NavigableSet<CacheSpan> getCachedSpans(@NonNull final String key) {
+        return cache.getCachedSpans(key);
+    }
+
+    public long getCachedBytes(@NonNull final String key) {
+        long bytes = 0;
+        for (final CacheSpan span : cache.getCachedSpans(key)) {
+            if (span.isCached) bytes += span.length;
+        }
+        return bytes;
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Pinning
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Keeps the cached spans of the given keys from being evicted, until unpinned as many
+     * times as they were pinned.
+     * */
+    public void pin(@NonNull final Collection<String> keys) {
+        if (DEBUG) Log.d(TAG, "pin() called with: keys = [" + keys + "]");
+        for (final String key : keys) {
+            evictor.pin(key);
+        }
+    }
+
+    public void unpin(@NonNull final Collection<String> keys) {
+        if (DEBUG) Log.d(TAG, "unpin() called with: keys = [" + keys + "]");
+        for (final String key : keys) {
+            evictor.unpin(key);
+        }
+    }
+
+    public boolean isPinned(@NonNull final String key) {
+        return evictor.isPinned(key);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Maintenance
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Removes all unpinned content through the cache, which keeps its index consistent,
+     * unlike deleting its files.
+     * */
+    public void clear() {
+        for (final String key : new ArrayList<>(cache.getKeys())) {
+            if (evictor.isPinned(key)) continue;
+
+            for (final CacheSpan span : new ArrayList<>(cache.getCachedSpans(key))) {
+                try {
+                    cache.removeSpan(span);
+                } catch (Cache.CacheException e) {
+                    Log.e(TAG, "Unable to remove cached span of " + key, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MediaCacheManager{" +
+                "directory=" + cacheDirectory +
+                ", cacheSpace=" + getCacheSpace() +
+                ", cacheBytesRead=" + getCacheBytesRead() +
+                ", networkBytesRead=" + getNetworkBytesRead() +
+                ", hitRatio=" + getHitRatio() +
+                '}';
+    }
+}
@@ -0,0 +1,190 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+
+import org.schabi.newpipe.MainActivity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Completable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Fetches the opening of the stream queued after the current one into the media cache, so
+ * the player reads it from disk once playback moves on, instead of buffering from the network.
+ * <br><br>
+ * Only progressive streams are prefetched, under the same cache keys as their sources, and only
+ * those the player built a source for, as registered in {@link #register(String, Uri)}. Each
+ * prefetch may use up the network for no more than {@link #BUDGET_SECONDS} at the estimated
+ * bandwidth. It is stopped while the player waits for the current stream, and resumed from
+ * what is already cached once playback goes on.
+ * */
+public class MediaPrefetcher {
+    private static final String TAG = "MediaPrefetcher";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    /** Seconds of network transfer at the estimated bandwidth a prefetch may take. */
+    private static final long BUDGET_SECONDS = 5;
+    /** Budget while there is no bandwidth estimate, about 10 seconds of 480p video. */
+    private static final long MINIMUM_BUDGET_BYTES = 1024 * 1024;
+    private static final long MAXIMUM_BUDGET_BYTES = 8 * 1024 * 1024;
+
+    /** Sources registered for the loaded items, which are few as the preload window is small. */
+    private static final int MAXIMUM_REGISTERED_SOURCES = 32;
+
+    @NonNull private final Cache cache;
+    @NonNull private final DataSource.Factory upstreamFactory;
+    @NonNull private final BandwidthMeter bandwidthMeter;
+
+    @NonNull private final Map<String, Uri> sources;
+
+    @NonNull private final SerialDisposable prefetchReactor;
+    @NonNull private List<String> pendingKeys = Collections.emptyList();
+    private boolean isPaused = false;
+
+    public MediaPrefetcher(@NonNull final Context context,
+                           @NonNull final String userAgent,
+                           @NonNull final PersistentBandwidthMeter bandwidthMeter) {
+        this.cache = MediaCacheManager.getInstance(context).getCache();
+        // Prefetched bytes are not counted as network reads, as they are played from the cache
+        this.upstreamFactory = new DefaultDataSourceFactory(context, userAgent, bandwidthMeter);
+        this.bandwidthMeter = bandwidthMeter;
+
+        this.sources = Collections.synchronizedMap(new LinkedHashMap<String, Uri>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Uri> eldest) {
+                return size() > MAXIMUM_REGISTERED_SOURCES;
+            }
+        });
+        this.prefetchReactor = new SerialDisposable();
+    }
+
+    /**
+     * Registers the progressive stream of a source built by the player, so it may be prefetched.
+     * <br><br>
+     * May be called from any thread.
+     * */
+    public void register(@NonNull final String cacheKey, @NonNull final Uri uri) {
+        sources.put(cacheKey, uri);
+    }
+
+    /**
+     * Fetches the opening of the registered streams among the given cache keys, replacing the
+     * prefetch in progress. If paused, the prefetch starts once resumed.
+     * */
+    public void prefetch(@NonNull final Collection<String> cacheKeys) {
+        final List<String> keys = new ArrayList<>();
+        for (final String key : cacheKeys) {
+            if (sources.containsKey(key)) keys.add(key);
+        }
+        if (DEBUG) Log.d(TAG, "prefetch() called with: keys = [" + keys + "]");
+
+        pendingKeys = keys;
+        if (isPaused) return;
+        startPrefetch();
+    }
+
+    /**
+     * Stops the prefetch in progress until resumed, so it does not take bandwidth
+     * from the current stream.
+     * */
+    public void pause() {
+        if (isPaused) return;
+        if (DEBUG) Log.d(TAG, "pause() called");
+
+        isPaused = true;
+        prefetchReactor.set(null);
+    }
+
+    public void resume() {
+        if (!isPaused) return;
+        if (DEBUG) Log.d(TAG, "resume() called");
+
+        isPaused = false;
+        startPrefetch();
+    }
+
+    /**
+     * Returns a completable caching the first bytes of the given stream, apart from the prefetch
+     * of the next item, for a stream the player is about to switch to.
+     * */
+    @NonNull
+    public Completable warm(@NonNull final String cacheKey, @NonNull final Uri uri,
+                            final long bytes) {
+        return Completable.fromAction(() -> fetch(cacheKey, uri, bytes))
+                .subscribeOn(Schedulers.io());
+    }
+
+    public void dispose() {
+        if (DEBUG) Log.d(TAG, "dispose() called");
+        pendingKeys = Collections.emptyList();
+        prefetchReactor.dispose();
+    }
+
+    private void startPrefetch() {
+        final List<String> keys = pendingKeys;
+        if (keys.isEmpty()) {
+            prefetchReactor.set(null);
+            return;
+        }
+
+        final long bytesPerStream = getBudgetBytes() / keys.size();
+        prefetchReactor.set(Completable.fromAction(() -> fetch(keys, bytesPerStream))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> {
+                    if (pendingKeys == keys) pendingKeys = Collections.emptyList();
+                }, throwable -> {
+                    if (DEBUG) Log.d(TAG, "Unable to prefetch keys = [" + keys + "]", throwable);
+                }));
+    }
+
+    private long getBudgetBytes() {
+        final long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+        if (bitrateEstimate == BandwidthMeter.NO_ESTIMATE) return MINIMUM_BUDGET_BYTES;
+
+        final long budget = bitrateEstimate / 8 * BUDGET_SECONDS;
+        return Math.max(MINIMUM_BUDGET_BYTES, Math.min(MAXIMUM_BUDGET_BYTES, budget));
+    }
+
+    /**
+     * Caches the first bytes of each stream, skipping those already cached, so an interrupted
+     * prefetch continues where it left off.
+     * */
+    private void fetch(@NonNull final List<String> keys, final long bytesPerStream)
+            throws IOException, InterruptedException {
+        for (final String key : keys) {
+            final Uri uri = sources.get(key);
+            if (uri != null) fetch(key, uri, bytesPerStream);
+        }
+    }
+
+    private void fetch(@NonNull final String key, @NonNull final Uri uri, final long bytes)
+            throws IOException, InterruptedException {
+        final DataSpec dataSpec = new DataSpec(uri, 0, bytes, key);
+        final CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+        CacheUtil.cache(dataSpec, cache, upstreamFactory.createDataSource(), counters);
+
+        if (DEBUG) Log.d(TAG, "Prefetched key = [" + key + "], " +
+                "cached = [" + counters.alreadyCachedBytes + "], " +
+                "fetched = [" + counters.newlyCachedBytes + "]");
+    }
+}
@@ -0,0 +1,236 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.telephony.TelephonyManager;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import org.schabi.newpipe.MainActivity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bandwidth meter which remembers its estimate per network across player sessions.
+ * <br><br>
+ * A new {@link DefaultBandwidthMeter} has no estimate until it measured some transfers, so
+ * the track selection starts every session at a conservative quality and only ramps up over
+ * the first segments. This meter answers with the estimate saved for the current network
+ * instead, until enough was transferred for the measured one to replace it.
+ * <br><br>
+ * Networks are told apart by a hash of the Wi-Fi network name, or by the cellular generation.
+ * Since Android 8.1, the name of a Wi-Fi network is only known to apps with the location
+ * permission, which this app does not request, so all Wi-Fi networks then share one estimate.
+ * <br><br>
+ * Besides the estimate, the meter tracks how much the measured throughput varies between
+ * transfers, as a flaky network needs more buffer than a steady one of the same bandwidth.
+ * */
+public class PersistentBandwidthMeter implements BandwidthMeter, TransferListener<Object> {
+    private static final String TAG = "PersistentBandwidth";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final String PREFERENCES_NAME = "bandwidth_estimates";
+    private static final String TIMESTAMP_SUFFIX = "_timestamp";
+
+    /** Transferred bytes after which the measured estimate is used instead of the saved one. */
+    private static final long MINIMUM_MEASURED_BYTES = 512 * 1024;
+    /** Saved estimates older than this describe a network which may have changed since. */
+    private static final long MAXIMUM_ESTIMATE_AGE_MILLIS = TimeUnit.DAYS.toMillis(14);
+    private static final long SAVE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** Samples smaller than this mostly measure the latency of the request. */
+    private static final long MINIMUM_SAMPLE_BYTES = 64 * 1024;
+    /** Weight of the newest sample in the running mean and variance of the throughput. */
+    private static final double SAMPLE_WEIGHT = 0.2;
+
+    @NonNull private final Context context;
+    @NonNull private final SharedPreferences preferences;
+    @NonNull private final DefaultBandwidthMeter measuredMeter;
+
+    @Nullable private final String networkKey;
+    private final long savedEstimate;
+
+    @NonNull private final AtomicLong measuredBytes = new AtomicLong();
+    @NonNull private final AtomicLong lastSaveMillis = new AtomicLong();
+
+    // Guarded by this, throughput is sampled between starts and ends of all transfers
+    private int transferCount;
+    private long sampleStartMillis;
+    private long sampleBytes;
+    private double throughputMean;
+    private double throughputVariance;
+
+    public PersistentBandwidthMeter(@NonNull final Context context) {
+        this.context = context.getApplicationContext();
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.measuredMeter = new DefaultBandwidthMeter();
+
+        this.networkKey = getNetworkKey(context);
+        this.savedEstimate = readEstimate(networkKey);
+        if (DEBUG) Log.d(TAG, "Network=[" + networkKey + "] has estimate=[" + savedEstimate + "]");
+    }
+
+    @Override
+    public long getBitrateEstimate() {
+        final long measured = measuredMeter.getBitrateEstimate();
+        if (measured != NO_ESTIMATE && measuredBytes.get() >= MINIMUM_MEASURED_BYTES) {
+            return measured;
+        }
+        return savedEstimate != NO_ESTIMATE ? savedEstimate : measured;
+    }
+
+    /**
+     * Returns the coefficient of variation of the throughput measured in this session,
+     * which is 0 for a steady network and grows with its fluctuation, or 0 if unknown.
+     * */
+    public synchronized double getBitrateVariation() {
+        if (throughputMean <= 0) return 0;
+        return Math.sqrt(throughputVariance) / throughputMean;
+    }
+
+    /**
+     * Saves the measured estimate for the network this meter was created on.
+     * */
+    public void save() {
+        if (networkKey == null || measuredBytes.get() < MINIMUM_MEASURED_BYTES) return;
+
+        final long measured = measuredMeter.getBitrateEstimate();
+        if (measured == NO_ESTIMATE) return;
+        // Estimates of a network the device left since would be saved for the wrong network
+        if (!networkKey.equals(getNetworkKey(context))) return;
+
+        // Smoothed with the saved estimate, so a single slow session does not stick
+        final long estimate = savedEstimate == NO_ESTIMATE ? measured :
+                (savedEstimate + measured) / 2;
+        if (DEBUG) Log.d(TAG, "Saving network=[" + networkKey + "] estimate=[" + estimate + "]");
+
+        lastSaveMillis.set(System.currentTimeMillis());
+        preferences.edit()
+                .putLong(networkKey, estimate)
+                .putLong(networkKey + TIMESTAMP_SUFFIX, System.currentTimeMillis())
+                .apply();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Transfer Listener
+    //////////////////////////////////////////////////////////////////////////*/
+
+    @Override
+    public void onTransferStart(Object source, DataSpec dataSpec) {
+        measuredMeter.onTransferStart(source, dataSpec);
+        synchronized (this) {
+            if (transferCount++ == 0) sampleStartMillis = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public void onBytesTransferred(Object source, int bytesTransferred) {
+        measuredMeter.onBytesTransferred(source, bytesTransferred);
+        measuredBytes.addAndGet(bytesTransferred);
+        synchronized (this) {
+            sampleBytes += bytesTransferred;
+        }
+    }
+
+    @Override
+    public void onTransferEnd(Object source) {
+        measuredMeter.onTransferEnd(source);
+        synchronized (this) {
+            final long nowMillis = System.currentTimeMillis();
+            final long elapsedMillis = nowMillis - sampleStartMillis;
+            if (elapsedMillis > 0 && sampleBytes >= MINIMUM_SAMPLE_BYTES) {
+                addThroughputSample(sampleBytes * 8000 / elapsedMillis);
+            }
+            if (--transferCount > 0) sampleStartMillis = nowMillis;
+            sampleBytes = 0;
+        }
+        // Saved along the way too, as the player process may be killed without notice
+        if (System.currentTimeMillis() - lastSaveMillis.get() >= SAVE_INTERVAL_MILLIS) save();
+    }
+
+    private void addThroughputSample(final long bitrate) {
+        if (throughputMean <= 0) {
+            throughputMean = bitrate;
+            return;
+        }
+        final double difference = bitrate - throughputMean;
+        throughputMean += SAMPLE_WEIGHT * difference;
+        throughputVariance = (1 - SAMPLE_WEIGHT) *
+                (throughputVariance + SAMPLE_WEIGHT * difference * difference);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Networks
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private long readEstimate(@Nullable final String key) {
+        if (key == null) return NO_ESTIMATE;
+
+        final long savedAt = preferences.getLong(key + TIMESTAMP_SUFFIX, 0);
+        if (System.currentTimeMillis() - savedAt > MAXIMUM_ESTIMATE_AGE_MILLIS) return NO_ESTIMATE;
+        return preferences.getLong(key, NO_ESTIMATE);
+    }
+
+    @Nullable
+    private static String getNetworkKey(@NonNull final Context context) {
+        final ConnectivityManager manager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final NetworkInfo network = manager == null ? null : manager.getActiveNetworkInfo();
+        if (network == null || !network.isConnected()) return null;
+
+        switch (network.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                // The extra info of Wi-Fi networks is their name, which is not stored as is.
+                // Since Android 8.1 it is only known with the location permission, without
+                // which all Wi-Fi networks share one estimate, still better than none.
+                final String name = network.getExtraInfo();
+                if (TextUtils.isEmpty(name) || WifiManager.UNKNOWN_SSID.equals(name)) {
+                    return "wifi";
+                }
+                return "wifi_" + Integer.toHexString(name.hashCode());
+            case ConnectivityManager.TYPE_ETHERNET:
+                return "ethernet";
+            case ConnectivityManager.TYPE_MOBILE:
+                return "cellular_" + getCellularClass(network.getSubtype());
+            default:
+                return "other_" + network.getType();
+        }
+    }
+
+    @NonNull
+    private static String getCellularClass(final int networkType) {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return "2g";
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+                return "3g";
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                return "4g";
+            default:
+                return "unknown";
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.schabi.newpipe.player.helper;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evicts the least recently used spans, like
+ * {@link com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor}, except for
+ * spans of pinned keys, as long as those take up no more than a share of the cache.
+ * <br><br>
+ * Keys are pinned by counting, as several players may pin the same key, which stays pinned
+ * until all of them have unpinned it. The cache calls the evictor under its own lock, pins may
+ * change from any thread.
+ * */
+/* package-private */ final class PinningCacheEvictor implements CacheEvictor,
+        Comparator<CacheSpan> {
+    private final long maximumBytes;
+    private final long maximumPinnedBytes;
+
+    @NonNull private final TreeSet<CacheSpan> leastRecentlyUsed;
+    /** Number of pins of each pinned key, keys are removed once unpinned by all. */
+    @NonNull private final Map<String, Integer> pinCounts;
+    private long currentBytes;
+
+    PinningCacheEvictor(final long maximumBytes, final long maximumPinnedBytes) {
+        this.maximumBytes = maximumBytes;
+        this.maximumPinnedBytes = maximumPinnedBytes;
+        this.leastRecentlyUsed = new TreeSet<>(this);
+        this.pinCounts = new ConcurrentHashMap<>();
+    }
+
+    synchronized void pin(@NonNull final String key) {
+        final Integer count = pinCounts.get(key);
+        pinCounts.put(key, count == null ? 1 : count + 1);
+    }
+
+    synchronized void unpin(@NonNull final String key) {
+        final Integer count = pinCounts.get(key);
+        if (count == null) return;
+
+        if (count > 1) {
+            pinCounts.put(key, count - 1);
+        } else {
+            pinCounts.remove(key);
+        }
+    }
+
+    boolean isPinned(@NonNull final String key) {
+        return pinCounts.containsKey(key);
+    }
+
+    @Override
+    public void onCacheInitialized() {}
+
+    @Override
+    public void onStartFile(Cache cache, String key, long position, long length) {
+        evict(cache, length);
+    }
+
+    @Override
+    public void onSpanAdded(Cache cache, CacheSpan span) {
+        leastRecentlyUsed.add(span);
+        currentBytes += span.length;
+        evict(cache, 0);
+    }
+
+    @Override
+    public void onSpanRemoved(Cache cache, CacheSpan span) {
+        leastRecentlyUsed.remove(span);
+        currentBytes -= span.length;
+    }
+
+    @Override
+    public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        onSpanRemoved(cache, oldSpan);
+        onSpanAdded(cache, newSpan);
+    }
+
+    @Override
+    public int compare(@NonNull final CacheSpan lhs, @NonNull final CacheSpan rhs) {
+        if (lhs.lastAccessTimestamp == rhs.lastAccessTimestamp) return lhs.compareTo(rhs);
+        return lhs.lastAccessTimestamp < rhs.lastAccessTimestamp ? -1 : 1;
+    }
+
+    private void evict(@NonNull final Cache cache, final long requiredBytes) {
+        if (currentBytes + requiredBytes <= maximumBytes) return;
+
+        long pinnedBytes = 0;
+        for (final CacheSpan span : leastRecentlyUsed) {
+            if (isPinned(span.key)) pinnedBytes += span.length;
+        }
+
+        // Removing spans changes the set through onSpanRemoved, so it is iterated on a copy
+        final List<CacheSpan> candidates = new ArrayList<>(leastRecentlyUsed);
+        for (final CacheSpan span : candidates) {
+            if (currentBytes + requiredBytes <= maximumBytes) return;
+
+            final boolean isPinned = isPinned(span.key);
+            if (isPinned && pinnedBytes <= maximumPinnedBytes) continue;
+            try {
+                cache.removeSpan(span);
+                if (isPinned) pinnedBytes -= span.length;
+            } catch (Cache.CacheException ignored) {
+                // Moving on to the next span
+            }
+        }
+    }
+}
@@ -1,39 +1,78 @@
 package org.schabi.newpipe.player.helper;
 
 import android.content.Context;
+import android.net.Uri;
 import android.support.annotation.NonNull;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.SingleSampleMediaSource;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
 import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.Period;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Completable;
+
+/**
+ * Builds the media source factories of the player.
+ * <br><br>
+ * Live DASH and SmoothStreaming streams play {@link #LIVE_STREAM_EDGE_GAP_MILLIS} behind the
+ * live edge. With the low latency live setting, live DASH streams play
+ * {@link #LOW_LATENCY_EDGE_GAP_SEGMENTS} segments behind it, as read from their manifests,
+ * and SmoothStreaming ones {@link #LOW_LATENCY_LIVE_STREAM_EDGE_GAP_MILLIS}, as their gap
+ * cannot be set per manifest. Live HLS streams start three target segment durations behind
+ * the edge, and are prepared without loading chunks, from their playlists alone.
+ * <br><br>
+ * Caption files are read through the {@link SubtitleCache} instead of the media cache.
+ * */
 public class PlayerDataSource {
     private static final int MANIFEST_MINIMUM_RETRY = 5;
     private static final int EXTRACTOR_MINIMUM_RETRY = Integer.MAX_VALUE;
     private static final int LIVE_STREAM_EDGE_GAP_MILLIS = 10000;
+    /** Gap of low latency live streams whose segment duration is unknown. */
+    /* package-private */ static final int LOW_LATENCY_LIVE_STREAM_EDGE_GAP_MILLIS = 3000;
+    private static final int LOW_LATENCY_EDGE_GAP_SEGMENTS = 2;
+    private static final int MINIMUM_LOW_LATENCY_EDGE_GAP_MILLIS = 1000;
 
     private final DataSource.Factory cacheDataSourceFactory;
     private final DataSource.Factory cachelessDataSourceFactory;
+    private final SubtitleCache subtitleCache;
+    private final boolean isLowLatencyLive;
+    private final int liveStreamEdgeGapMillis;
 
     public PlayerDataSource(@NonNull final Context context,
                             @NonNull final String userAgent,
                             @NonNull final TransferListener<? super DataSource> transferListener) {
         cacheDataSourceFactory = new CacheFactory(context, userAgent, transferListener);
         cachelessDataSourceFactory = new DefaultDataSourceFactory(context, userAgent, transferListener);
+        subtitleCache = SubtitleCache.getInstance(context);
+        isLowLatencyLive = PlayerHelper.isLowLatencyLiveEnabled(context);
+        liveStreamEdgeGapMillis = isLowLatencyLive ?
+                LOW_LATENCY_LIVE_STREAM_EDGE_GAP_MILLIS : LIVE_STREAM_EDGE_GAP_MILLIS;
     }
 
     public SsMediaSource.Factory getLiveSsMediaSourceFactory() {
         return new SsMediaSource.Factory(new DefaultSsChunkSource.Factory(
                 cachelessDataSourceFactory), cachelessDataSourceFactory)
                 .setMinLoadableRetryCount(MANIFEST_MINIMUM_RETRY)
-                .setLivePresentationDelayMs(LIVE_STREAM_EDGE_GAP_MILLIS);
+                .setLivePresentationDelayMs(liveStreamEdgeGapMillis);
     }
 
     public HlsMediaSource.Factory getLiveHlsMediaSourceFactory() {
@@ -43,10 +82,16 @@ public class PlayerDataSource {
     }
 
     public DashMediaSource.Factory getLiveDashMediaSourceFactory() {
-        return new DashMediaSource.Factory(new DefaultDashChunkSource.Factory(
-                cachelessDataSourceFactory), cachelessDataSourceFactory)
-                .setMinLoadableRetryCount(MANIFEST_MINIMUM_RETRY)
-                .setLivePresentationDelayMs(LIVE_STREAM_EDGE_GAP_MILLIS);
+        final DashMediaSource.Factory factory = new DashMediaSource.Factory(
+                new DefaultDashChunkSource.Factory(cachelessDataSourceFactory),
+                cachelessDataSourceFactory)
+                .setMinLoadableRetryCount(MANIFEST_MINIMUM_RETRY);
+        if (!isLowLatencyLive) return factory.setLivePresentationDelayMs(liveStreamEdgeGapMillis);
+
+        // The gap is put into each manifest as it is parsed, and taken from there
+        return factory.setManifestParser(new LowLatencyDashManifestParser())
+                .setLivePresentationDelayMs(
+                        DashMediaSource.DEFAULT_LIVE_PRESENTATION_DELAY_PREFER_MANIFEST_MS);
     }
 
     public SsMediaSource.Factory getSsMediaSourceFactory() {
@@ -72,7 +117,70 @@ public class PlayerDataSource {
         return getExtractorMediaSourceFactory().setCustomCacheKey(key);
     }
 
-    public SingleSampleMediaSource.Factory getSampleMediaSourceFactory() {
-        return new SingleSampleMediaSource.Factory(cacheDataSourceFactory);
+    public SingleSampleMediaSource.Factory getSubtitleMediaSourceFactory(@NonNull final String key) {
+        return new SingleSampleMediaSource.Factory(
+                subtitleCache.getDataSourceFactory(cachelessDataSourceFactory, key));
+    }
+
+    public Completable prefetchSubtitles(@NonNull final String key, @NonNull final Uri uri) {
+        return subtitleCache.prefetch(cachelessDataSourceFactory, key, uri);
+    }
+
+    /**
+     * Parses DASH manifests, and suggests playing their live streams
+     * {@link #LOW_LATENCY_EDGE_GAP_SEGMENTS} of their longest segments behind the live edge,
+     * which is as close as they can be played without waiting for the next segment.
+     * */
+    private static final class LowLatencyDashManifestParser
+            implements ParsingLoadable.Parser<DashManifest> {
+        @NonNull private final DashManifestParser parser = new DashManifestParser();
+
+        @Override
+        public DashManifest parse(Uri uri, InputStream inputStream) throws IOException {
+            final DashManifest manifest = parser.parse(uri, inputStream);
+            if (!manifest.dynamic) return manifest;
+
+            final long segmentDurationMs = getSegmentDurationMs(manifest);
+            final long edgeGapMillis = segmentDurationMs == C.TIME_UNSET ?
+                    LOW_LATENCY_LIVE_STREAM_EDGE_GAP_MILLIS :
+                    Math.max(MINIMUM_LOW_LATENCY_EDGE_GAP_MILLIS, Math.min(
+                            LIVE_STREAM_EDGE_GAP_MILLIS,
+                            LOW_LATENCY_EDGE_GAP_SEGMENTS * segmentDurationMs));
+
+            final List<Period> periods = new ArrayList<>(manifest.getPeriodCount());
+            for (int i = 0; i < manifest.getPeriodCount(); i++) {
+                periods.add(manifest.getPeriod(i));
+            }
+            return new DashManifest(manifest.availabilityStartTimeMs, manifest.durationMs,
+                    manifest.minBufferTimeMs, manifest.dynamic, manifest.minUpdatePeriodMs,
+                    manifest.timeShiftBufferDepthMs, edgeGapMillis, manifest.utcTiming,
+                    manifest.location, periods);
+        }
+
+        /**
+         * Returns the longest segment duration of the last period, which holds the live edge,
+         * or {@link C#TIME_UNSET} if its representations are not segmented.
+         * */
+        private static long getSegmentDurationMs(@NonNull final DashManifest manifest) {
+            final int lastPeriodIndex = manifest.getPeriodCount() - 1;
+            if (lastPeriodIndex < 0) return C.TIME_UNSET;
+
+            final long periodDurationUs = C.msToUs(manifest.getPeriodDurationMs(lastPeriodIndex));
+            long segmentDurationUs = C.TIME_UNSET;
+            for (final AdaptationSet adaptationSet :
+                    manifest.getPeriod(lastPeriodIndex).adaptationSets) {
+                for (final Representation representation : adaptationSet.representations) {
+                    final DashSegmentIndex index = representation.getIndex();
+                    if (index == null) continue;
+
+                    final long durationUs = index.getDurationUs(index.getFirstSegmentNum(),
+                            periodDurationUs);
+                    if (durationUs != C.TIME_UNSET && durationUs > 0) {
+                        segmentDurationUs = Math.max(segmentDurationUs, durationUs);
+                    }
+                }
+            }
+            return C.usToMs(segmentDurationUs);
+        }
     }
 }
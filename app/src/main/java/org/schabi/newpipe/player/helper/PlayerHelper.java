@@ -111,6 +111,27 @@ public class PlayerHelper {
         return info.getUrl() + audio.getAverageBitrate() + audio.getFormat().getName();
     }
 
+    @NonNull
+    public static String cacheKeyOf(@NonNull final StreamInfo info,
+                                    @NonNull final Subtitles subtitles) {
+        return info.getUrl() + subtitles.getLocale() + subtitles.isAutoGenerated() +
+                subtitles.getFileType().name();
+    }
+
+    /**
+     * Returns the cache keys of all streams of the given {@link StreamInfo}.
+     * */
+    @NonNull
+    public static List<String> cacheKeysOf(@NonNull final StreamInfo info) {
+        final List<String> keys = new ArrayList<>();
+        for (final VideoStream video : info.getVideoStreams()) keys.add(cacheKeyOf(info, video));
+        for (final VideoStream video : info.getVideoOnlyStreams()) {
+            keys.add(cacheKeyOf(info, video));
+        }
+        for (final AudioStream audio : info.getAudioStreams()) keys.add(cacheKeyOf(info, audio));
+        return keys;
+    }
+
     /**
      * Given a {@link StreamInfo} and the existing queue items, provide the
      * {@link SinglePlayQueue} consisting of the next video for auto queuing.
@@ -173,12 +194,25 @@ public class PlayerHelper {
         return isAutoQueueEnabled(context, false);
     }
 
+    public static boolean isFastStartEnabled(@NonNull final Context context) {
+        return isFastStartEnabled(context, false);
+    }
+
+    public static boolean isLowLatencyLiveEnabled(@NonNull final Context context) {
+        return isLowLatencyLiveEnabled(context, false);
+    }
+
     @NonNull
     public static SeekParameters getSeekParameters(@NonNull final Context context) {
         return isUsingInexactSeek(context, false) ?
                 SeekParameters.CLOSEST_SYNC : SeekParameters.EXACT;
     }
 
+    @NonNull
+    public static String getPreloadWindowMode(@NonNull final Context context) {
+        return getPreloadWindowMode(context, context.getString(R.string.preload_window_default));
+    }
+
     public static long getPreferredCacheSize(@NonNull final Context context) {
         return 64 * 1024 * 1024L;
     }
@@ -271,6 +305,22 @@ public class PlayerHelper {
         setScreenBrightness(context, setScreenBrightness, System.currentTimeMillis());
     }
 
+    /**
+     * Returns the caption language last chosen, as made by {@link #captionLanguageOf},
+     * or null if captions were turned off.
+     * */
+    @Nullable
+    public static String getCaptionLanguage(@NonNull final Context context) {
+        return getCaptionLanguage(context, null);
+    }
+
+    public static void setCaptionLanguage(@NonNull final Context context,
+                                          @Nullable final String captionLanguage) {
+        getPreferences(context).edit()
+                .putString(context.getString(R.string.caption_language_key), captionLanguage)
+                .apply();
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Private helpers
     ////////////////////////////////////////////////////////////////////////////
@@ -304,6 +354,22 @@ public class PlayerHelper {
         return getPreferences(context).getBoolean(context.getString(R.string.auto_queue_key), b);
     }
 
+    private static boolean isFastStartEnabled(@NonNull final Context context, final boolean b) {
+        return getPreferences(context).getBoolean(context.getString(R.string.fast_start_key), b);
+    }
+
+    private static boolean isLowLatencyLiveEnabled(@NonNull final Context context, final boolean b) {
+        return getPreferences(context).getBoolean(context.getString(R.string.low_latency_live_key), b);
+    }
+
+    private static String getPreloadWindowMode(@NonNull final Context context, final String b) {
+        return getPreferences(context).getString(context.getString(R.string.preload_window_key), b);
+    }
+
+    private static String getCaptionLanguage(@NonNull final Context context, final String b) {
+        return getPreferences(context).getString(context.getString(R.string.caption_language_key), b);
+    }
+
     private static void setScreenBrightness(@NonNull final Context context, final float screenBrightness, final long timestamp) {
         SharedPreferences.Editor editor = getPreferences(context).edit();
         editor.putFloat(context.getString(R.string.screen_brightness_key), screenBrightness);
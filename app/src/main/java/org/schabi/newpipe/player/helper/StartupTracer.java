@@ -0,0 +1,196 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.schabi.newpipe.MainActivity;
+import org.schabi.newpipe.R;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Traces the startup of playback, from the moment it is requested until the first frame is
+ * rendered, or until the player is ready for audio only playback.
+ * <br><br>
+ * Each startup is a span of named stages, each timed from the one before, which are marked by
+ * the components handing the playback over along the way: the navigation, the player service,
+ * the media source manager and the player. Only one startup is traced at a time, so beginning
+ * a new one keeps any unfinished span as incomplete. The last {@link #MAXIMUM_SPANS} spans are
+ * kept in memory, to be exported from the debug settings.
+ * <br><br>
+ * Stages which run within a single call may also be traced as {@link Trace} sections for
+ * systrace, if enabled in the debug settings. Spans themselves cross threads, which sections
+ * cannot.
+ * */
+public final class StartupTracer {
+    private static final String TAG = "StartupTracer";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final int MAXIMUM_SPANS = 32;
+    /** Stages marked beyond this are dropped, in case a span is never ended. */
+    private static final int MAXIMUM_STAGES = 32;
+    private static final String SECTION_PREFIX = "NewPipe:";
+
+    private static final StartupTracer instance = new StartupTracer(MAXIMUM_SPANS);
+
+    private final int capacity;
+    @NonNull private final ArrayDeque<Span> spans;
+    @Nullable private Span activeSpan;
+
+    private volatile boolean isSystraceEnabled = false;
+
+    /* package-private */ StartupTracer(final int capacity) {
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(capacity);
+    }
+
+    public static StartupTracer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Begins tracing a new startup, requested from the given origin.
+     * */
+    public void begin(@NonNull final Context context, @NonNull final String origin) {
+        isSystraceEnabled = PreferenceManager.getDefaultSharedPreferences(context)
+                .getBoolean(context.getString(R.string.startup_trace_systrace_key), false);
+        begin(origin, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Begins tracing a new startup, unless one is already traced, for startups which may or
+     * may not have been requested through a traced origin.
+     * */
+    public void beginIfIdle(@NonNull final Context context, @NonNull final String origin) {
+        if (!isTracing()) begin(context, origin);
+    }
+
+    public void mark(@NonNull final String stage) {
+        mark(stage, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Marks the last stage of the startup traced, if any, and keeps its span.
+     * */
+    public void end(@NonNull final String stage) {
+        final Span span = end(stage, SystemClock.elapsedRealtime());
+        if (DEBUG && span != null) Log.d(TAG, "Startup traced: " + span);
+    }
+
+    public void beginSection(@NonNull final String name) {
+        if (!isSystraceEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return;
+        }
+        Trace.beginSection(SECTION_PREFIX + name);
+    }
+
+    public void endSection() {
+        if (!isSystraceEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return;
+        }
+        Trace.endSection();
+    }
+
+    /**
+     * Returns the kept spans as text, oldest first, one per line.
+     * */
+    @NonNull
+    public String export() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Span span : getSpans()) builder.append(span).append('\n');
+        return builder.toString();
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Spans
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /* package-private */ synchronized boolean isTracing() {
+        return activeSpan != null;
+    }
+
+    /* package-private */ synchronized void begin(@NonNull final String origin,
+                                                 final long nowMillis) {
+        if (activeSpan != null) keep(activeSpan);
+        activeSpan = new Span(origin, nowMillis);
+    }
+
+    /* package-private */ synchronized void mark(@NonNull final String stage,
+                                                final long nowMillis) {
+        if (activeSpan != null) activeSpan.add(stage, nowMillis);
+    }
+
+    @Nullable
+    /* package-private */ synchronized Span end(@NonNull final String stage, final long nowMillis) {
+        final Span span = activeSpan;
+        if (span == null) return null;
+
+        span.add(stage, nowMillis);
+        span.isComplete = true;
+        keep(span);
+        activeSpan = null;
+        return span;
+    }
+
+    @NonNull
+    /* package-private */ synchronized List<Span> getSpans() {
+        return Collections.unmodifiableList(new ArrayList<>(spans));
+    }
+
+    private void keep(@NonNull final Span span) {
+        if (spans.size() >= capacity) spans.removeFirst();
+        spans.addLast(span);
+    }
+
+    /**
+     * A traced startup, whose stages are timed from the previous one, or from its beginning.
+     * */
+    /* package-private */ static final class Span {
+        @NonNull final String origin;
+        final long startMillis;
+        @NonNull final List<String> stages = new ArrayList<>();
+        @NonNull final List<Long> stageMillis = new ArrayList<>();
+        boolean isComplete = false;
+
+        private long lastMillis;
+
+        Span(@NonNull final String origin, final long startMillis) {
+            this.origin = origin;
+            this.startMillis = startMillis;
+            this.lastMillis = startMillis;
+        }
+
+        void add(@NonNull final String stage, final long nowMillis) {
+            if (stages.size() >= MAXIMUM_STAGES) return;
+            stages.add(stage);
+            stageMillis.add(nowMillis - lastMillis);
+            lastMillis = nowMillis;
+        }
+
+        long getTotalMillis() {
+            return lastMillis - startMillis;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder()
+                    .append("origin=[").append(origin).append("], ")
+                    .append(isComplete ? "complete" : "incomplete").append(", ")
+                    .append("total=[").append(getTotalMillis()).append("ms]");
+            for (int i = 0; i < stages.size(); i++) {
+                builder.append(", ").append(stages.get(i))
+                        .append("=[+").append(stageMillis.get(i)).append("ms]");
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.schabi.newpipe.player.helper;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import org.schabi.newpipe.MainActivity;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Owns the cache of caption files of all players in the process, which is kept apart from the
+ * media cache so captions are not evicted by the streams loaded around them.
+ * <br><br>
+ * Caption files are cached under keys made by {@link PlayerHelper#cacheKeyOf(
+ * org.schabi.newpipe.extractor.stream.StreamInfo, org.schabi.newpipe.extractor.Subtitles)},
+ * of their stream and language, instead of their urls. Those of the preferred language are
+ * prefetched while the source of their stream is built, so selecting them later is read from
+ * disk. The cache is small, as caption files are, and kept across sessions.
+ * */
+public final class SubtitleCache {
+    private static final String TAG = "SubtitleCache";
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final String CACHE_FOLDER_NAME = "subtitles";
+    private static final long MAXIMUM_CACHE_SIZE = 4 * 1024 * 1024;
+    private static final int CACHE_FLAGS = CacheDataSource.FLAG_BLOCK_ON_CACHE |
+            CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR;
+
+    private static SubtitleCache instance;
+
+    @NonNull private final SimpleCache cache;
+
+    private SubtitleCache(@NonNull final Context context) {
+        final File parent = context.getExternalCacheDir() != null ?
+                context.getExternalCacheDir() : context.getCacheDir();
+        final File cacheDirectory = new File(parent, CACHE_FOLDER_NAME);
+        if (!cacheDirectory.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDirectory.mkdir();
+        }
+
+        this.cache = new SimpleCache(cacheDirectory,
+                new LeastRecentlyUsedCacheEvictor(MAXIMUM_CACHE_SIZE));
+    }
+
+    @NonNull
+    public static synchronized SubtitleCache getInstance(@NonNull final Context context) {
+        if (instance == null) instance = new SubtitleCache(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Returns a factory of sources reading the caption file under the given key through the
+     * cache, and from the given upstream on a miss.
+     * */
+    @NonNull
+    public DataSource.Factory getDataSourceFactory(@NonNull final DataSource.Factory upstreamFactory,
+                                                   @NonNull final String cacheKey) {
+        return () -> new KeyedDataSource(new CacheDataSource(cache,
+                upstreamFactory.createDataSource(), new FileDataSource(),
+                new CacheDataSink(cache, MAXIMUM_CACHE_SIZE), CACHE_FLAGS, null), cacheKey);
+    }
+
+    /**
+     * Returns a completable caching the whole caption file under the given key, which does not
+     * fetch anything if it is cached already.
+     * */
+    @NonNull
+    public Completable prefetch(@NonNull final DataSource.Factory upstreamFactory,
+                                @NonNull final String cacheKey, @NonNull final Uri uri) {
+        return Completable.fromAction(() -> {
+            final DataSpec dataSpec = new DataSpec(uri, 0, C.LENGTH_UNSET, cacheKey);
+            final CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+            CacheUtil.cache(dataSpec, cache, upstreamFactory.createDataSource(), counters);
+
+            if (DEBUG) Log.d(TAG, "Prefetched key = [" + cacheKey + "], " +
+                    "cached = [" + counters.alreadyCachedBytes + "], " +
+                    "fetched = [" + counters.newlyCachedBytes + "]");
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Opens its source with the given cache key, as the sample sources of captions only give
+     * their urls, which the cache would otherwise key them by.
+     * */
+    private static final class KeyedDataSource implements DataSource {
+        @NonNull private final DataSource dataSource;
+        @NonNull private final String cacheKey;
+
+        KeyedDataSource(@NonNull final DataSource dataSource, @NonNull final String cacheKey) {
+            this.dataSource = dataSource;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            return dataSource.open(new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition,
+                    dataSpec.length, cacheKey, dataSpec.flags));
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            return dataSource.read(buffer, offset, readLength);
+        }
+
+        @Nullable
+        @Override
+        public Uri getUri() {
+            return dataSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            dataSource.close();
+        }
+    }
+}
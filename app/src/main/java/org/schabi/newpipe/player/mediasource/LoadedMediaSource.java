@@ -30,7 +30,11 @@ public class LoadedMediaSource implements ManagedMediaSource {
     }
 
     private boolean isExpired() {
-        return System.currentTimeMillis() >= expireTimestamp;
+        return isExpiringWithin(0);
+    }
+
+    public boolean isExpiringWithin(final long millis) {
+        return System.currentTimeMillis() + millis >= expireTimestamp;
     }
 
     @Override
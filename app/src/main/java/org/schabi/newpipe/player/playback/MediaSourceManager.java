@@ -2,6 +2,7 @@ package org.schabi.newpipe.player.playback;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.util.ArrayMap;
 import android.support.v4.util.ArraySet;
 import android.util.Log;
 
@@ -11,6 +12,7 @@ import com.google.android.exoplayer2.source.MediaSource;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.player.helper.StartupTracer;
 import org.schabi.newpipe.player.mediasource.FailedMediaSource;
 import org.schabi.newpipe.player.mediasource.LoadedMediaSource;
 import org.schabi.newpipe.player.mediasource.ManagedMediaSource;
@@ -27,21 +29,27 @@ import org.schabi.newpipe.util.ServiceHelper;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.disposables.SerialDisposable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.internal.subscriptions.EmptySubscription;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
 
 import static org.schabi.newpipe.player.mediasource.FailedMediaSource.MediaSourceResolutionException;
 import static org.schabi.newpipe.player.mediasource.FailedMediaSource.StreamInfoLoadException;
@@ -50,19 +58,18 @@ import static org.schabi.newpipe.player.playqueue.PlayQueue.DEBUG;
 public class MediaSourceManager {
     @NonNull private final String TAG = "MediaSourceManager@" + hashCode();
 
+    @NonNull private final PlaybackListener playbackListener;
+    @NonNull private final PlayQueue playQueue;
+
     /**
      * Determines how many streams before and after the current stream should be loaded.
-     * The default value (1) ensures seamless playback under typical network settings.
      * <br><br>
      * The streams after the current will be loaded into the playlist timeline while the
      * streams before will only be cached for future usage.
      *
      * @see #onMediaSourceReceived(PlayQueueItem, ManagedMediaSource)
      * */
-    private final static int WINDOW_SIZE = 1;
-
-    @NonNull private final PlaybackListener playbackListener;
-    @NonNull private final PlayQueue playQueue;
+    @NonNull private final PreloadPolicy preloadPolicy;
 
     /**
      * Determines the gap time between the playback position and the playback duration which
@@ -94,31 +101,80 @@ public class MediaSourceManager {
     @NonNull private Subscription playQueueReactor;
 
     /**
-     * Determines the maximum number of disposables allowed in the {@link #loaderReactor}.
-     * Once exceeded, new calls to {@link #loadImmediate()} will evict all disposables in the
-     * {@link #loaderReactor} in order to load a new set of items.
+     * Determines how long before expiring the queued {@link LoadedMediaSource}s are reloaded
+     * in the background, at most a fifth of their lifetime so short-lived sources are not
+     * reloaded right after loading. The refreshed sources are swapped into the timeline
+     * while they are still valid, so playback does not have to wait for a reload once it
+     * reaches them.
+     * <br><br>
+     * The source being played is never refreshed, as replacing it would interrupt playback.
+     *
+     * @see #maybeRefreshExpiringSources()
+     * */
+    private final static long REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private final static long REFRESH_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    @NonNull private final Disposable refreshChecker;
+
+    /**
+     * Determines the maximum number of items next to the current one resolved at the same
+     * time, across all managers. They run on the bounded {@link #NEIGHBOR_LOADER_SCHEDULER},
+     * instead of the unbounded io scheduler, so loads of items skipped past cannot pile up on
+     * the network.
+     * <br><br>
+     * Extraction cannot be interrupted, so a cancelled load keeps its loader busy until the
+     * extraction returns, and a loader is only counted as free once it really is. The current
+     * item is loaded on its own {@link #CURRENT_LOADER_SCHEDULER} instead, so such stale loads
+     * of neighbors can never hold up loading the item the user actually skipped to.
      *
-     * @see #loadImmediate()
-     * @see #maybeLoadItem(PlayQueueItem)
+     * @see #startPendingLoads()
      * */
-    private final static int MAXIMUM_LOADER_SIZE = WINDOW_SIZE * 2 + 1;
-    @NonNull private final CompositeDisposable loaderReactor;
-    @NonNull private final Set<PlayQueueItem> loadingItems;
+    private final static int MAXIMUM_CONCURRENT_NEIGHBOR_LOADS = 2;
+    private final static LoaderExecutor NEIGHBOR_LOADER_EXECUTOR =
+            new LoaderExecutor(MAXIMUM_CONCURRENT_NEIGHBOR_LOADS);
+    private final static Scheduler NEIGHBOR_LOADER_SCHEDULER =
+            Schedulers.from(NEIGHBOR_LOADER_EXECUTOR);
+    /**
+     * Loads the current item with a single loader across all managers. Starting to load a new
+     * current item cancels the load of the previous one, which is then skipped if it has not
+     * started yet, so skipping through the queue quickly extracts one item at a time.
+     *
+     * @see #cancelCurrentItemLoad(PlayQueueItem)
+     * */
+    private final static Scheduler CURRENT_LOADER_SCHEDULER =
+            Schedulers.from(new LoaderExecutor(1));
+    /** The item last loaded as the current item, while it loads. */
+    @Nullable private PlayQueueItem currentLoadingItem;
+    @NonNull private final Disposable loaderFreedReactor;
+
+    /** Items waiting for a free loader, in no particular order as they are ranked on start. */
+    @NonNull private final Set<PlayQueueItem> pendingLoads;
+    @NonNull private final Map<PlayQueueItem, Disposable> runningLoads;
     @NonNull private final SerialDisposable syncReactor;
 
+    /**
+     * The item after the current one last handed to the listener for prefetching, so it is
+     * handed over only once while it stays next in line.
+     *
+     * @see #maybePrefetchNextItem()
+     * */
+    @Nullable private PlayQueueItem prefetchedItem;
+    @NonNull private final SerialDisposable prefetchReactor;
+
     @NonNull private final AtomicBoolean isBlocked;
 
     @NonNull private ManagedMediaSourcePlaylist playlist;
 
     public MediaSourceManager(@NonNull final PlaybackListener listener,
-                              @NonNull final PlayQueue playQueue) {
-        this(listener, playQueue, /*loadDebounceMillis=*/400L,
+                              @NonNull final PlayQueue playQueue,
+                              @NonNull final PreloadPolicy preloadPolicy) {
+        this(listener, playQueue, preloadPolicy, /*loadDebounceMillis=*/400L,
                 /*playbackNearEndGapMillis=*/TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS),
                 /*progressUpdateIntervalMillis*/TimeUnit.MILLISECONDS.convert(2, TimeUnit.SECONDS));
     }
 
     private MediaSourceManager(@NonNull final PlaybackListener listener,
                                @NonNull final PlayQueue playQueue,
+                               @NonNull final PreloadPolicy preloadPolicy,
                                final long loadDebounceMillis,
                                final long playbackNearEndGapMillis,
                                final long progressUpdateIntervalMillis) {
@@ -134,6 +190,8 @@ public class MediaSourceManager {
         this.playbackListener = listener;
         this.playQueue = playQueue;
 
+        this.preloadPolicy = preloadPolicy;
+
         this.playbackNearEndGapMillis = playbackNearEndGapMillis;
         this.progressUpdateIntervalMillis = progressUpdateIntervalMillis;
         this.nearEndIntervalSignal = getEdgeIntervalSignal();
@@ -141,16 +199,21 @@ public class MediaSourceManager {
         this.loadDebounceMillis = loadDebounceMillis;
         this.debouncedSignal = PublishSubject.create();
         this.debouncedLoader = getDebouncedLoader();
+        this.refreshChecker = getRefreshChecker();
+        this.loaderFreedReactor = NEIGHBOR_LOADER_EXECUTOR.getFreedSignal()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(ignored -> startPendingLoads());
 
         this.playQueueReactor = EmptySubscription.INSTANCE;
-        this.loaderReactor = new CompositeDisposable();
         this.syncReactor = new SerialDisposable();
+        this.prefetchReactor = new SerialDisposable();
 
         this.isBlocked = new AtomicBoolean(false);
 
         this.playlist = new ManagedMediaSourcePlaylist();
 
-        this.loadingItems = Collections.synchronizedSet(new ArraySet<>());
+        this.pendingLoads = new ArraySet<>();
+        this.runningLoads = new ArrayMap<>();
 
         playQueue.getBroadcastReceiver()
                 .observeOn(AndroidSchedulers.mainThread())
@@ -168,10 +231,13 @@ public class MediaSourceManager {
 
         debouncedSignal.onComplete();
         debouncedLoader.dispose();
+        refreshChecker.dispose();
+        loaderFreedReactor.dispose();
 
         playQueueReactor.cancel();
-        loaderReactor.dispose();
+        cancelLoadsOutside(Collections.emptySet());
         syncReactor.dispose();
+        prefetchReactor.dispose();
         playlist.dispose();
     }
 
@@ -267,7 +333,8 @@ public class MediaSourceManager {
     //////////////////////////////////////////////////////////////////////////*/
 
     private boolean isPlayQueueReady() {
-        final boolean isWindowLoaded = playQueue.size() - playQueue.getIndex() > WINDOW_SIZE;
+        final int itemsAhead = preloadPolicy.getItemsAhead(playQueue.getItem());
+        final boolean isWindowLoaded = playQueue.size() - playQueue.getIndex() > itemsAhead;
         return playQueue.isComplete() || isWindowLoaded;
     }
 
@@ -325,6 +392,7 @@ public class MediaSourceManager {
         // Ensure the current item is up to date with the play queue
         if (playQueue.getItem() == item) {
             playbackListener.onPlaybackSynchronize(item, info);
+            maybePrefetchNextItem();
         }
     }
 
@@ -359,38 +427,162 @@ public class MediaSourceManager {
 
     private void loadImmediate() {
         if (DEBUG) Log.d(TAG, "MediaSource - loadImmediate() called");
-        final ItemsToLoad itemsToLoad = getItemsToLoad(playQueue, WINDOW_SIZE);
+        final ItemsToLoad itemsToLoad = getItemsToLoad(playQueue,
+                preloadPolicy.getItemsAhead(playQueue.getItem()), preloadPolicy.getItemsBehind());
         if (itemsToLoad == null) return;
 
-        // Evict the previous items being loaded to free up memory, before start loading new ones
-        maybeClearLoaders();
+        // Only items that have left the window are cancelled, loads still needed keep going
+        final Set<PlayQueueItem> window = new ArraySet<>(itemsToLoad.neighbors);
+        window.add(itemsToLoad.center);
+        cancelLoadsOutside(window);
 
         maybeLoadItem(itemsToLoad.center);
         for (final PlayQueueItem item : itemsToLoad.neighbors) {
             maybeLoadItem(item);
         }
+        startPendingLoads();
     }
 
     private void maybeLoadItem(@NonNull final PlayQueueItem item) {
         if (DEBUG) Log.d(TAG, "maybeLoadItem() called.");
         if (playQueue.indexOf(item) >= playlist.size()) return;
 
-        if (!loadingItems.contains(item) && isCorrectionNeeded(item)) {
-            if (DEBUG) Log.d(TAG, "MediaSource - Loading=[" + item.getTitle() +
-                    "] with url=[" + item.getUrl() + "]");
+        if (!runningLoads.containsKey(item) && isCorrectionNeeded(item)) {
+            pendingLoads.add(item);
+        }
+    }
+
+    private void cancelLoadsOutside(@NonNull final Set<PlayQueueItem> window) {
+        pendingLoads.retainAll(window);
+
+        final Iterator<Map.Entry<PlayQueueItem, Disposable>> loads =
+                runningLoads.entrySet().iterator();
+        while (loads.hasNext()) {
+            final Map.Entry<PlayQueueItem, Disposable> load = loads.next();
+            if (window.contains(load.getKey())) continue;
+
+            if (DEBUG) Log.d(TAG, "MediaSource - Cancelling=[" + load.getKey().getTitle() + "]");
+            load.getValue().dispose();
+            loads.remove();
+        }
+    }
+
+    /**
+     * Starts loading the pending items closest to the current item, as long as there are
+     * loaders free for them.
+     * */
+    private void startPendingLoads() {
+        // Items removed from the queue before the debounced load cancelled them cannot be ranked
+        final Iterator<PlayQueueItem> pendingItems = pendingLoads.iterator();
+        while (pendingItems.hasNext()) {
+            if (playQueue.indexOf(pendingItems.next()) < 0) pendingItems.remove();
+        }
+
+        while (!pendingLoads.isEmpty()) {
+            PlayQueueItem nextItem = null;
+            int nextPriority = Integer.MAX_VALUE;
+            for (final PlayQueueItem item : pendingLoads) {
+                final int priority = getLoadPriority(item);
+                if (priority < nextPriority) {
+                    nextItem = item;
+                    nextPriority = priority;
+                }
+            }
+
+            if (nextItem == null) return;
+
+            final boolean isCurrentItem = nextItem == playQueue.getItem();
+            if (!isCurrentItem && !NEIGHBOR_LOADER_EXECUTOR.hasFreeLoader()) return;
 
-            loadingItems.add(item);
-            final Disposable loader = getLoadedMediaSource(item)
-                    .observeOn(AndroidSchedulers.mainThread())
-                    /* No exception handling since getLoadedMediaSource guarantees nonnull return */
-                    .subscribe(mediaSource -> onMediaSourceReceived(item, mediaSource));
-            loaderReactor.add(loader);
+            pendingLoads.remove(nextItem);
+            // The item may have been resolved or moved out of the timeline while waiting
+            if (playQueue.indexOf(nextItem) < playlist.size() && isCorrectionNeeded(nextItem)) {
+                startLoad(nextItem);
+            }
         }
     }
 
-    private Single<ManagedMediaSource> getLoadedMediaSource(@NonNull final PlayQueueItem stream) {
-        return stream.getStream().map(streamInfo -> {
-            final MediaSource source = playbackListener.sourceOf(stream, streamInfo);
+    /**
+     * Ranks an item by its distance from the current item, where lower is more urgent.
+     * Items ahead come before items behind at the same distance, as they are played sooner.
+     * */
+    private int getLoadPriority(@NonNull final PlayQueueItem item) {
+        final int size = playQueue.size();
+        final int index = playQueue.indexOf(item);
+        final int currentIndex = playQueue.getIndex();
+        if (index < 0 || size == 0) return Integer.MAX_VALUE;
+        if (index == currentIndex) return 0;
+
+        // Distances wrap around, to match the round robin of the items to load
+        final int distanceAhead = (index - currentIndex + size) % size;
+        final int distanceBehind = (currentIndex - index + size) % size;
+        return distanceAhead <= distanceBehind ? distanceAhead * 2 - 1 : distanceBehind * 2;
+    }
+
+    private void startLoad(@NonNull final PlayQueueItem item) {
+        if (DEBUG) Log.d(TAG, "MediaSource - Loading=[" + item.getTitle() +
+                "] with url=[" + item.getUrl() + "]");
+
+        final boolean isCurrentItem = item == playQueue.getItem();
+        if (isCurrentItem) {
+            StartupTracer.getInstance().mark("stream_loading");
+            cancelCurrentItemLoad(item);
+            currentLoadingItem = item;
+        }
+
+        final long loadStartMillis = System.currentTimeMillis();
+        final Scheduler scheduler = isCurrentItem ? CURRENT_LOADER_SCHEDULER :
+                NEIGHBOR_LOADER_SCHEDULER;
+        final Disposable loader = getLoadedMediaSource(item, scheduler, /*forceLoad=*/false)
+                .observeOn(AndroidSchedulers.mainThread())
+                /* No exception handling since getLoadedMediaSource guarantees nonnull return */
+                .subscribe(mediaSource -> {
+                    runningLoads.remove(item);
+                    if (currentLoadingItem == item) currentLoadingItem = null;
+                    if (mediaSource instanceof LoadedMediaSource) {
+                        preloadPolicy.onExtractionCompleted(
+                                System.currentTimeMillis() - loadStartMillis);
+                    }
+                    onMediaSourceReceived(item, mediaSource);
+                    startPendingLoads();
+                });
+        runningLoads.put(item, loader);
+    }
+
+    /**
+     * Cancels the load of the item last loaded as the current one, unless it is the given item.
+     * If it is still in the queue, it is loaded again as a neighbor once a loader is free.
+     * */
+    private void cancelCurrentItemLoad(@NonNull final PlayQueueItem newCurrentItem) {
+        final PlayQueueItem previousItem = currentLoadingItem;
+        currentLoadingItem = null;
+        if (previousItem == null || previousItem == newCurrentItem) return;
+
+        final Disposable previousLoad = runningLoads.remove(previousItem);
+        if (previousLoad == null) return;
+
+        if (DEBUG) Log.d(TAG, "MediaSource - Cancelling=[" + previousItem.getTitle() + "]");
+        previousLoad.dispose();
+        if (playQueue.indexOf(previousItem) >= 0) pendingLoads.add(previousItem);
+    }
+
+    private Single<ManagedMediaSource> getLoadedMediaSource(@NonNull final PlayQueueItem stream,
+                                                            @NonNull final Scheduler scheduler,
+                                                            final boolean forceLoad) {
+        return stream.getStream(scheduler, forceLoad).map(streamInfo -> {
+            final StartupTracer tracer = StartupTracer.getInstance();
+            final boolean isCurrentItem = stream == playQueue.getItem();
+            if (isCurrentItem) tracer.mark("stream_extracted");
+
+            final MediaSource source;
+            tracer.beginSection("sourceOf");
+            try {
+                source = playbackListener.sourceOf(stream, streamInfo);
+            } finally {
+                tracer.endSection();
+            }
+            if (isCurrentItem) tracer.mark("source_built");
+
             if (source == null) {
                 final String message = "Unable to resolve source from stream info." +
                         " URL: " + stream.getUrl() +
@@ -412,8 +604,6 @@ public class MediaSourceManager {
         if (DEBUG) Log.d(TAG, "MediaSource - Loaded=[" + item.getTitle() +
                 "] with url=[" + item.getUrl() + "]");
 
-        loadingItems.remove(item);
-
         final int itemIndex = playQueue.indexOf(item);
         // Only update the playlist timeline for items at the current index or after.
         if (isCorrectionNeeded(item)) {
@@ -421,6 +611,31 @@ public class MediaSourceManager {
                     "title=[" + item.getTitle() + "] at url=[" + item.getUrl() + "]");
             playlist.update(itemIndex, mediaSource, this::maybeSynchronizePlayer);
         }
+        maybePrefetchNextItem();
+    }
+
+    /**
+     * Hands the item after the current one to the listener once its source is loaded into
+     * the playlist, so the listener can fetch the opening of its media ahead of playback.
+     * The stream info is resolved from the cache, as loading the source just put it there.
+     * */
+    private void maybePrefetchNextItem() {
+        final int nextIndex = playQueue.getIndex() + 1;
+        final PlayQueueItem nextItem = playQueue.getItem(nextIndex);
+        if (nextItem == null || nextItem == prefetchedItem) return;
+
+        final ManagedMediaSource mediaSource = playlist.get(nextIndex);
+        if (!(mediaSource instanceof LoadedMediaSource) ||
+                ((LoadedMediaSource) mediaSource).getStream() != nextItem) return;
+
+        if (DEBUG) Log.d(TAG, "MediaSource - Prefetching=[" + nextItem.getTitle() +
+                "] with url=[" + nextItem.getUrl() + "]");
+        prefetchedItem = nextItem;
+        final Disposable prefetch = nextItem.getStream()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(info -> playbackListener.onPlaybackPrefetch(nextItem, info),
+                        throwable -> prefetchedItem = null);
+        prefetchReactor.set(prefetch);
     }
 
     /**
@@ -467,14 +682,82 @@ public class MediaSourceManager {
         playlist.invalidate(currentIndex, this::loadImmediate);
     }
 
-    private void maybeClearLoaders() {
-        if (DEBUG) Log.d(TAG, "MediaSource - maybeClearLoaders() called.");
-        if (!loadingItems.contains(playQueue.getItem()) &&
-                loaderReactor.size() > MAXIMUM_LOADER_SIZE) {
-            loaderReactor.clear();
-            loadingItems.clear();
+    /*//////////////////////////////////////////////////////////////////////////
+    // MediaSource Refreshing
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private Disposable getRefreshChecker() {
+        return Observable.interval(REFRESH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(ignored -> maybeRefreshExpiringSources());
+    }
+
+    /**
+     * Starts refreshing the loaded sources queued after the current item which are about to
+     * expire, as long as a loader can be spared without holding up regular loads.
+     * */
+    private void maybeRefreshExpiringSources() {
+        if (isBlocked.get() || playlist.size() != playQueue.size()) return;
+
+        final int currentIndex = playQueue.getIndex();
+        final int itemsAhead = preloadPolicy.getItemsAhead(playQueue.getItem());
+        final int lastIndex = Math.min(playQueue.size() - 1, currentIndex + itemsAhead);
+        for (int index = currentIndex + 1; index <= lastIndex; index++) {
+            if (!pendingLoads.isEmpty() || !NEIGHBOR_LOADER_EXECUTOR.hasFreeLoader()) return;
+
+            final PlayQueueItem item = playQueue.getItem(index);
+            final ManagedMediaSource mediaSource = playlist.get(index);
+            if (item == null || !(mediaSource instanceof LoadedMediaSource) ||
+                    !mediaSource.isStreamEqual(item) || runningLoads.containsKey(item)) {
+                continue;
+            }
+
+            final long margin = Math.min(REFRESH_MARGIN_MILLIS,
+                    ServiceHelper.getCacheExpirationMillis(item.getServiceId()) / 5);
+            if (((LoadedMediaSource) mediaSource).isExpiringWithin(margin)) {
+                startRefresh(item);
+            }
         }
     }
+
+    private void startRefresh(@NonNull final PlayQueueItem item) {
+        if (DEBUG) Log.d(TAG, "MediaSource - Refreshing=[" + item.getTitle() +
+                "] with url=[" + item.getUrl() + "]");
+
+        // The cached stream info expires along with the source, so it must be bypassed
+        final Disposable refresher = getLoadedMediaSource(item, NEIGHBOR_LOADER_SCHEDULER,
+                /*forceLoad=*/true)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(mediaSource -> {
+                    runningLoads.remove(item);
+                    onMediaSourceRefreshed(item, mediaSource);
+                    startPendingLoads();
+                });
+        runningLoads.put(item, refresher);
+    }
+
+    private void onMediaSourceRefreshed(@NonNull final PlayQueueItem item,
+                                        @NonNull final ManagedMediaSource mediaSource) {
+        // Regular loads skip items being refreshed, so take their place if one is needed now
+        if (isCorrectionNeeded(item)) {
+            onMediaSourceReceived(item, mediaSource);
+            return;
+        }
+        // A failed refresh keeps the old source, which is reloaded as usual once expired
+        if (!(mediaSource instanceof LoadedMediaSource)) return;
+
+        // The item may have started playing or left the timeline while refreshing
+        final int itemIndex = playQueue.indexOf(item);
+        if (itemIndex < 0 || itemIndex == playQueue.getIndex()) return;
+
+        final ManagedMediaSource oldSource = playlist.get(itemIndex);
+        if (oldSource instanceof LoadedMediaSource && oldSource.isStreamEqual(item)) {
+            if (DEBUG) Log.d(TAG, "MediaSource - Refreshed index=[" + itemIndex + "] with " +
+                    "title=[" + item.getTitle() + "] at url=[" + item.getUrl() + "]");
+            playlist.update(itemIndex, mediaSource);
+        }
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // MediaSource Playlist Helpers
     //////////////////////////////////////////////////////////////////////////*/
@@ -498,7 +781,8 @@ public class MediaSourceManager {
     //////////////////////////////////////////////////////////////////////////*/
     @Nullable
     private static ItemsToLoad getItemsToLoad(@NonNull final PlayQueue playQueue,
-                                              final int windowSize) {
+                                              final int itemsAhead,
+                                              final int itemsBehind) {
         // The current item has higher priority
         final int currentIndex = playQueue.getIndex();
         final PlayQueueItem currentItem = playQueue.getItem(currentIndex);
@@ -507,8 +791,8 @@ public class MediaSourceManager {
         // The rest are just for seamless playback
         // Although timeline is not updated prior to the current index, these sources are still
         // loaded into the cache for faster retrieval at a potentially later time.
-        final int leftBound = Math.max(0, currentIndex - windowSize);
-        final int rightLimit = currentIndex + windowSize + 1;
+        final int leftBound = Math.max(0, currentIndex - itemsBehind);
+        final int rightLimit = currentIndex + itemsAhead + 1;
         final int rightBound = Math.min(playQueue.size(), rightLimit);
         final Set<PlayQueueItem> neighbors = new ArraySet<>(
                 playQueue.getStreams().subList(leftBound,rightBound));
@@ -533,4 +817,44 @@ public class MediaSourceManager {
             this.neighbors = neighbors;
         }
     }
+
+    /**
+     * Runs loads on a bounded number of threads, counting each one as busy from when it is
+     * submitted until its work returns, which for a cancelled load is long after it was
+     * disposed. Signals every time a loader is freed, so waiting loads can start.
+     * */
+    private static final class LoaderExecutor extends ThreadPoolExecutor {
+        private final int loaderCount;
+        @NonNull private final AtomicInteger busyLoaders = new AtomicInteger();
+        @NonNull private final Subject<Integer> freedSignal =
+                PublishSubject.<Integer>create().toSerialized();
+
+        LoaderExecutor(final int loaderCount) {
+            super(loaderCount, loaderCount, /*keepAliveTime=*/30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>());
+            this.loaderCount = loaderCount;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(@NonNull final Runnable command) {
+            busyLoaders.incrementAndGet();
+            super.execute(command);
+        }
+
+        @Override
+        protected void afterExecute(final Runnable runnable, final Throwable throwable) {
+            super.afterExecute(runnable, throwable);
+            freedSignal.onNext(busyLoaders.decrementAndGet());
+        }
+
+        boolean hasFreeLoader() {
+            return busyLoaders.get() < loaderCount;
+        }
+
+        @NonNull
+        Observable<Integer> getFreedSignal() {
+            return freedSignal;
+        }
+    }
 }
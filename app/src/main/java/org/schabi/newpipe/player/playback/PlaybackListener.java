@@ -56,6 +56,15 @@ public interface PlaybackListener {
     @Nullable
     MediaSource sourceOf(final PlayQueueItem item, final StreamInfo info);
 
+    /**
+     * Called when the stream after the current one in the queue has been loaded into the
+     * playlist. Signals to the listener that it may fetch the opening of the stream's media,
+     * so the transition to it does not have to wait for the network.
+     *
+     * May be called at any time once unblock is called.
+     * */
+    void onPlaybackPrefetch(@NonNull final PlayQueueItem item, @NonNull final StreamInfo info);
+
     /**
      * Called when the play queue can no longer to played or used.
      * Currently, this means the play queue is empty and complete.
@@ -0,0 +1,115 @@
+package org.schabi.newpipe.player.playback;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+
+import org.schabi.newpipe.R;
+import org.schabi.newpipe.player.helper.PlayerHelper;
+import org.schabi.newpipe.player.playqueue.PlayQueueItem;
+
+/**
+ * Decides how many items around the current one the {@link MediaSourceManager} resolves
+ * ahead of time.
+ * <br><br>
+ * In adaptive mode, the next item is always resolved so transitions can be gapless. More items
+ * ahead are resolved when extraction is slow compared to the duration of the current item, or
+ * when it is slow and the network is fast. On metered networks only the next item is resolved,
+ * and the previous item, which is only kept around in case the user goes back, is skipped.
+ * */
+public class PreloadPolicy {
+    private static final int MINIMUM_ITEMS_AHEAD = 1;
+    private static final int MAXIMUM_ITEMS_AHEAD = 4;
+    private static final int MAXIMUM_ITEMS_BEHIND = 1;
+    /** Limit of items ahead when the network is too slow to spend it on future items. */
+    private static final int SLOW_NETWORK_ITEMS_AHEAD = 2;
+
+    /** Assumed until the first extraction has been measured. */
+    private static final long DEFAULT_EXTRACTION_LATENCY_MILLIS = 2000;
+    /** Extractions faster than this are answered from the cache and not measured. */
+    private static final long CACHED_EXTRACTION_MILLIS = 50;
+    /** Extractions slower than this are worth resolving further ahead on a fast network. */
+    private static final long SLOW_EXTRACTION_MILLIS = 3000;
+    /** Weight of the latest measurement in the moving average of the extraction latency. */
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.3;
+    /** How many times the extraction latency the resolved items ahead should last. */
+    private static final int LATENCY_HEADROOM = 2;
+
+    private static final long FAST_NETWORK_BITRATE = 2_000_000;
+    private static final long SLOW_NETWORK_BITRATE = 500_000;
+
+    @NonNull private final Context context;
+    @NonNull private final BandwidthMeter bandwidthMeter;
+    @Nullable private final ConnectivityManager connectivityManager;
+
+    private double extractionLatencyMillis = DEFAULT_EXTRACTION_LATENCY_MILLIS;
+
+    public PreloadPolicy(@NonNull final Context context,
+                         @NonNull final BandwidthMeter bandwidthMeter) {
+        this.context = context;
+        this.bandwidthMeter = bandwidthMeter;
+        this.connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * Returns the number of items after the current item that should be resolved.
+     * */
+    public int getItemsAhead(@Nullable final PlayQueueItem currentItem) {
+        final String mode = PlayerHelper.getPreloadWindowMode(context);
+        if (mode.equals(context.getString(R.string.preload_window_minimal_key))) {
+            return MINIMUM_ITEMS_AHEAD;
+        } else if (mode.equals(context.getString(R.string.preload_window_extended_key))) {
+            return MAXIMUM_ITEMS_AHEAD;
+        }
+
+        if (isNetworkMetered()) return MINIMUM_ITEMS_AHEAD;
+
+        int itemsAhead = MINIMUM_ITEMS_AHEAD;
+        final long durationMillis = currentItem == null ? 0 : currentItem.getDuration() * 1000;
+        if (durationMillis > 0) {
+            // Short items leave less time to resolve the next ones while they play
+            itemsAhead += (int) (extractionLatencyMillis * LATENCY_HEADROOM / durationMillis);
+        }
+
+        final long bitrate = bandwidthMeter.getBitrateEstimate();
+        if (bitrate >= FAST_NETWORK_BITRATE && extractionLatencyMillis >= SLOW_EXTRACTION_MILLIS) {
+            itemsAhead++;
+        } else if (bitrate != BandwidthMeter.NO_ESTIMATE && bitrate < SLOW_NETWORK_BITRATE) {
+            itemsAhead = Math.min(itemsAhead, SLOW_NETWORK_ITEMS_AHEAD);
+        }
+
+        return Math.max(MINIMUM_ITEMS_AHEAD, Math.min(MAXIMUM_ITEMS_AHEAD, itemsAhead));
+    }
+
+    /**
+     * Returns the number of items before the current item that should be resolved.
+     * */
+    public int getItemsBehind() {
+        final String mode = PlayerHelper.getPreloadWindowMode(context);
+        if (mode.equals(context.getString(R.string.preload_window_minimal_key))) return 0;
+        if (mode.equals(context.getString(R.string.preload_window_extended_key))) {
+            return MAXIMUM_ITEMS_BEHIND;
+        }
+        return isNetworkMetered() ? 0 : MAXIMUM_ITEMS_BEHIND;
+    }
+
+    /**
+     * Records how long resolving an item took, from requesting its stream info until its
+     * media source was created.
+     * */
+    public void onExtractionCompleted(final long latencyMillis) {
+        if (latencyMillis < CACHED_EXTRACTION_MILLIS) return;
+        extractionLatencyMillis += LATENCY_SMOOTHING_FACTOR *
+                (latencyMillis - extractionLatencyMillis);
+    }
+
+    private boolean isNetworkMetered() {
+        return connectivityManager != null &&
+                ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+}
@@ -16,11 +16,16 @@ import org.schabi.newpipe.player.playqueue.events.RemoveEvent;
 import org.schabi.newpipe.player.playqueue.events.ReorderEvent;
 import org.schabi.newpipe.player.playqueue.events.SelectEvent;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.BackpressureStrategy;
@@ -36,24 +41,25 @@ import io.reactivex.subjects.BehaviorSubject;
  * message bus, providing all listeners with new updates to the play queue.
  *
  * This class can be serialized for passing intents, but in order to start the
- * message bus, it must be initialized.
+ * message bus, it must be initialized. Its items are serialized through the compact
+ * {@link PlayQueueCodec}, as queues may hold thousands of them.
  * */
-public abstract class PlayQueue implements Serializable {
+public abstract class PlayQueue implements Serializable, Cloneable {
     private final String TAG = "PlayQueue@" + Integer.toHexString(hashCode());
 
     public static final boolean DEBUG = true;
 
-    private ArrayList<PlayQueueItem> backup;
-    private ArrayList<PlayQueueItem> streams;
-    @NonNull private final AtomicInteger queueIndex;
+    private transient PlayQueueItemList backup;
+    private transient PlayQueueItemList streams;
+    @NonNull private AtomicInteger queueIndex;
 
     private transient BehaviorSubject<PlayQueueEvent> eventBroadcast;
     private transient Flowable<PlayQueueEvent> broadcastReceiver;
     private transient Subscription reportingReactor;
+    private transient PlayQueueJournal journal;
 
     PlayQueue(final int index, final List<PlayQueueItem> startWith) {
-        streams = new ArrayList<>();
-        streams.addAll(startWith);
+        streams = new PlayQueueItemList(startWith);
 
         queueIndex = new AtomicInteger(index);
     }
@@ -130,12 +136,12 @@ public abstract class PlayQueue implements Serializable {
     }
 
     /**
-     * Returns the index of the given item using referential equality.
-     * May be null despite play queue contains identical item.
+     * Returns the index of the given item using referential equality, in constant time.
+     * May be -1 despite play queue contains identical item.
+     * <br><br>
+     * Synchronized like the changes, as the lookup updates the positions it finds stale.
      * */
-    public int indexOf(@NonNull final PlayQueueItem item) {
-        // referential equality, can't think of a better way to do this
-        // todo: better than this
+    public synchronized int indexOf(@NonNull final PlayQueueItem item) {
         return streams.indexOf(item);
     }
 
@@ -165,7 +171,7 @@ public abstract class PlayQueue implements Serializable {
      * */
     @NonNull
     public List<PlayQueueItem> getStreams() {
-        return Collections.unmodifiableList(streams);
+        return streams.asList();
     }
 
     /**
@@ -313,7 +319,7 @@ public abstract class PlayQueue implements Serializable {
             queueIndex.incrementAndGet();
         }
 
-        streams.add(target, streams.remove(source));
+        streams.move(source, target);
         broadcast(new MoveEvent(source, target));
     }
 
@@ -349,15 +355,15 @@ public abstract class PlayQueue implements Serializable {
      * */
     public synchronized void shuffle() {
         if (backup == null) {
-            backup = new ArrayList<>(streams);
+            backup = new PlayQueueItemList(streams.asList());
         }
         final int originIndex = getIndex();
         final PlayQueueItem current = getItem();
-        Collections.shuffle(streams);
+        streams.shuffle();
 
-        final int newIndex = streams.indexOf(current);
+        final int newIndex = current == null ? -1 : streams.indexOf(current);
         if (newIndex != -1) {
-            streams.add(0, streams.remove(newIndex));
+            streams.move(newIndex, 0);
         }
         queueIndex.set(0);
 
@@ -381,7 +387,7 @@ public abstract class PlayQueue implements Serializable {
         streams = backup;
         backup = null;
 
-        final int newIndex = streams.indexOf(current);
+        final int newIndex = current == null ? -1 : streams.indexOf(current);
         if (newIndex != -1) {
             queueIndex.set(newIndex);
         } else {
@@ -391,11 +397,83 @@ public abstract class PlayQueue implements Serializable {
         broadcast(new ReorderEvent(originIndex, queueIndex.get()));
     }
 
+    /*//////////////////////////////////////////////////////////////////////////
+    // Serialization
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private synchronized void writeObject(@NonNull final ObjectOutputStream outputStream)
+            throws IOException {
+        outputStream.defaultWriteObject();
+        PlayQueueCodec.writeItems(outputStream, streams.asList());
+        PlayQueueCodec.writeOrder(outputStream, streams, backup);
+    }
+
+    /**
+     * Returns a copy of this queue as it is now, which can be serialized on another thread
+     * while this queue keeps changing. Its items are copied too, as their recovery positions
+     * change along. The copy is not initialized and is only meant to be serialized.
+     * */
+    @NonNull
+    /*package-private*/ synchronized PlayQueue snapshot() {
+        final PlayQueue copy;
+        try {
+            copy = (PlayQueue) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e); // not possible on a cloneable class
+        }
+
+        final Map<PlayQueueItem, PlayQueueItem> copies = new IdentityHashMap<>(streams.size());
+        copy.streams = new PlayQueueItemList(copyItems(streams.asList(), copies));
+        copy.backup = backup == null ? null :
+                new PlayQueueItemList(copyItems(backup.asList(), copies));
+        copy.queueIndex = new AtomicInteger(queueIndex.get());
+
+        copy.eventBroadcast = null;
+        copy.broadcastReceiver = null;
+        copy.reportingReactor = null;
+        copy.journal = null;
+        return copy;
+    }
+
+    @NonNull
+    private static List<PlayQueueItem> copyItems(@NonNull final List<PlayQueueItem> items,
+                                                 @NonNull final Map<PlayQueueItem,
+                                                         PlayQueueItem> copies) {
+        final List<PlayQueueItem> copiedItems = new ArrayList<>(items.size());
+        for (final PlayQueueItem item : items) {
+            PlayQueueItem copiedItem = copies.get(item);
+            if (copiedItem == null) {
+                copiedItem = new PlayQueueItem(item.getTitle(), item.getUrl(),
+                        item.getServiceId(), item.getDuration(), item.getThumbnailUrl(),
+                        item.getUploader(), item.getStreamType());
+                copiedItem.setRecoveryPosition(item.getRecoveryPosition());
+                copies.put(item, copiedItem);
+            }
+            copiedItems.add(copiedItem);
+        }
+        return copiedItems;
+    }
+
+    private void readObject(@NonNull final ObjectInputStream inputStream)
+            throws IOException, ClassNotFoundException {
+        inputStream.defaultReadObject();
+        final List<PlayQueueItem> items = PlayQueueCodec.readItems(inputStream);
+        final List<PlayQueueItem> backupItems = PlayQueueCodec.readOrder(inputStream, items);
+        streams = new PlayQueueItemList(items);
+        backup = backupItems == null ? null : new PlayQueueItemList(backupItems);
+    }
+
     /*//////////////////////////////////////////////////////////////////////////
     // Rx Broadcast
     //////////////////////////////////////////////////////////////////////////*/
 
+    /*package-private*/ synchronized void setJournal(@Nullable final PlayQueueJournal journal) {
+        this.journal = journal;
+    }
+
     private void broadcast(@NonNull final PlayQueueEvent event) {
+        // Recorded before the lock of the change is released, so no later change precedes it
+        if (journal != null) journal.onPlayQueueChanged(this, event);
         if (eventBroadcast != null) {
             eventBroadcast.onNext(event);
         }
@@ -0,0 +1,152 @@
+package org.schabi.newpipe.player.playqueue;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the items of a {@link PlayQueue}, written in place of the default
+ * serialization of every single {@link PlayQueueItem}, which describes their fields by name and
+ * type and restores them through reflection.
+ * <br><br>
+ * Strings repeated among items, such as the uploader of a channel queue, are written once and
+ * referred to by their index afterwards. The shuffle backup holds the same items as the queue,
+ * so it is written as the positions of its items in the queue, which also keeps them the same
+ * instances once read.
+ * <br><br>
+ * Item errors are left out, as they only apply to the extraction that caused them.
+ * */
+final class PlayQueueCodec {
+    private static final int VERSION = 1;
+    private static final int NO_ORDER = -1;
+
+    private PlayQueueCodec() {
+        //no instance
+    }
+
+    static void writeItems(@NonNull final DataOutput output,
+                           @NonNull final List<PlayQueueItem> items) throws IOException {
+        output.writeInt(VERSION);
+        output.writeInt(items.size());
+
+        final Map<String, Integer> strings = new HashMap<>();
+        for (final PlayQueueItem item : items) {
+            writeString(output, strings, item.getTitle());
+            writeString(output, strings, item.getUrl());
+            output.writeInt(item.getServiceId());
+            output.writeLong(item.getDuration());
+            writeString(output, strings, item.getThumbnailUrl());
+            writeString(output, strings, item.getUploader());
+            writeString(output, strings, item.getStreamType().name());
+            output.writeLong(item.getRecoveryPosition());
+        }
+    }
+
+    @NonNull
+    static List<PlayQueueItem> readItems(@NonNull final DataInput input) throws IOException {
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new InvalidObjectException("Unknown play queue version: " + version);
+        }
+
+        final int size = input.readInt();
+        final List<PlayQueueItem> items = new ArrayList<>(size);
+        final List<String> strings = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final String title = readString(input, strings);
+            final String url = readString(input, strings);
+            final int serviceId = input.readInt();
+            final long duration = input.readLong();
+            final String thumbnailUrl = readString(input, strings);
+            final String uploader = readString(input, strings);
+            final StreamType streamType = readStreamType(readString(input, strings));
+
+            final PlayQueueItem item = new PlayQueueItem(title, url, serviceId, duration,
+                    thumbnailUrl, uploader, streamType);
+            item.setRecoveryPosition(input.readLong());
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Writes the order of the given items by their index in the queue.
+     * */
+    static void writeOrder(@NonNull final DataOutput output,
+                           @NonNull final PlayQueueItemList queue,
+                           @Nullable final PlayQueueItemList order) throws IOException {
+        if (order == null) {
+            output.writeInt(NO_ORDER);
+            return;
+        }
+
+        output.writeInt(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            output.writeInt(queue.indexOf(order.get(i)));
+        }
+    }
+
+    @Nullable
+    static List<PlayQueueItem> readOrder(@NonNull final DataInput input,
+                                         @NonNull final List<PlayQueueItem> queue)
+            throws IOException {
+        final int size = input.readInt();
+        if (size == NO_ORDER) return null;
+
+        final List<PlayQueueItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final int index = input.readInt();
+            if (index < 0 || index >= queue.size()) {
+                throw new InvalidObjectException("Item not in play queue: " + index);
+            }
+            items.add(queue.get(index));
+        }
+        return items;
+    }
+
+    private static void writeString(@NonNull final DataOutput output,
+                                    @NonNull final Map<String, Integer> strings,
+                                    @NonNull final String string) throws IOException {
+        final Integer index = strings.get(string);
+        if (index != null) {
+            output.writeInt(index);
+            return;
+        }
+
+        output.writeInt(strings.size());
+        output.writeUTF(string);
+        strings.put(string, strings.size());
+    }
+
+    @NonNull
+    private static String readString(@NonNull final DataInput input,
+                                     @NonNull final List<String> strings) throws IOException {
+        final int index = input.readInt();
+        if (index == strings.size()) {
+            strings.add(input.readUTF());
+        } else if (index < 0 || index > strings.size()) {
+            throw new InvalidObjectException("Unknown string reference: " + index);
+        }
+        return strings.get(index);
+    }
+
+    @NonNull
+    private static StreamType readStreamType(@NonNull final String name)
+            throws InvalidObjectException {
+        try {
+            return StreamType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException("Unknown stream type: " + name);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.schabi.newpipe.util.ExtractorHelper;
 
 import java.io.Serializable;
 
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 
@@ -41,7 +42,7 @@ public class PlayQueueItem implements Serializable {
                 item.getThumbnailUrl(), item.getUploaderName(), item.getStreamType());
     }
 
-    private PlayQueueItem(@Nullable final String name, @Nullable final String url,
+    PlayQueueItem(@Nullable final String name, @Nullable final String url,
                           final int serviceId, final long duration,
                           @Nullable final String thumbnailUrl, @Nullable final String uploader,
                           @NonNull final StreamType streamType) {
@@ -100,8 +101,18 @@ public class PlayQueueItem implements Serializable {
 
     @NonNull
     public Single<StreamInfo> getStream() {
-        return ExtractorHelper.getStreamInfo(this.serviceId, this.url, false)
-                .subscribeOn(Schedulers.io())
+        return getStream(Schedulers.io(), /*forceLoad=*/false);
+    }
+
+    /**
+     * Same as {@link #getStream()}, but extracts on the given scheduler instead of io,
+     * bypassing the cache if forced to, e.g. to renew stream urls before they expire.
+     * */
+    @NonNull
+    public Single<StreamInfo> getStream(@NonNull final Scheduler scheduler,
+                                        final boolean forceLoad) {
+        return ExtractorHelper.getStreamInfo(this.serviceId, this.url, forceLoad)
+                .subscribeOn(scheduler)
                 .doOnError(throwable -> error = throwable);
     }
 
@@ -0,0 +1,129 @@
+package org.schabi.newpipe.player.playqueue;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of {@link PlayQueueItem}s which finds the index of an item by reference in constant time.
+ * <br><br>
+ * The position of every item is kept in an identity map. Instead of updating the positions of
+ * all items shifted by a remove or move, only the lowest index from which positions may be
+ * outdated is tracked, and positions from there on are corrected by a lookup as it scans for
+ * an outdated item. A scan never goes past the item looked up and each position is corrected
+ * once per change, so a lookup never costs more than the linear search it replaces, while
+ * lookups following it, and those of items before the change, take constant time.
+ * <br><br>
+ * Items are expected to be unique instances, should one be added twice,
+ * {@link #indexOf(PlayQueueItem)} still returns its first index.
+ * */
+final class PlayQueueItemList {
+    @NonNull private final ArrayList<PlayQueueItem> items;
+
+    @NonNull private final Map<PlayQueueItem, Integer> positions;
+    /** Positions of items before this index are up to date. */
+    private int validPositions;
+    /** Without duplicates, items without a position are known not to be in the list. */
+    private boolean hasDuplicates;
+
+    PlayQueueItemList(@NonNull final Collection<PlayQueueItem> startWith) {
+        items = new ArrayList<>(startWith.size());
+        positions = new IdentityHashMap<>(startWith.size());
+        addAll(startWith);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    PlayQueueItem get(final int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Returns the first index of the given item using referential equality,
+     * or -1 if it is not in the list.
+     * */
+    int indexOf(@NonNull final PlayQueueItem item) {
+        final Integer position = positions.get(item);
+        if (position != null && isValidPosition(item, position)) return position;
+        if (position == null && !hasDuplicates) return -1;
+
+        while (validPositions < items.size()) {
+            final int index = validPositions++;
+            final PlayQueueItem scanned = items.get(index);
+            final Integer scannedPosition = positions.get(scanned);
+            // Earlier duplicates keep their position
+            if (scannedPosition == null || !isValidPosition(scanned, scannedPosition)) {
+                positions.put(scanned, index);
+            }
+            if (scanned == item) return index;
+        }
+        return -1;
+    }
+
+    void addAll(@NonNull final Collection<PlayQueueItem> newItems) {
+        final boolean isUpToDate = validPositions == items.size();
+        for (final PlayQueueItem item : newItems) {
+            if (positions.containsKey(item)) {
+                hasDuplicates = true;
+            } else {
+                positions.put(item, items.size());
+            }
+            items.add(item);
+        }
+        if (isUpToDate) validPositions = items.size();
+    }
+
+    PlayQueueItem remove(final int index) {
+        final PlayQueueItem removed = items.remove(index);
+        invalidateFrom(index);
+
+        // An earlier copy of the same item keeps its position
+        final Integer position = positions.get(removed);
+        if (position != null && !isValidPosition(removed, position)) positions.remove(removed);
+        return removed;
+    }
+
+    void move(final int source, final int target) {
+        items.add(target, items.remove(source));
+        invalidateFrom(Math.min(source, target));
+    }
+
+    void shuffle() {
+        Collections.shuffle(items);
+        invalidateFrom(0);
+    }
+
+    void clear() {
+        items.clear();
+        positions.clear();
+        validPositions = 0;
+        hasDuplicates = false;
+    }
+
+    /**
+     * Returns an immutable view of the list, which reflects later changes.
+     * */
+    @NonNull
+    List<PlayQueueItem> asList() {
+        return Collections.unmodifiableList(items);
+    }
+
+    private boolean isValidPosition(@NonNull final PlayQueueItem item, final int position) {
+        return position < validPositions && items.get(position) == item;
+    }
+
+    private void invalidateFrom(final int index) {
+        validPositions = Math.min(validPositions, index);
+    }
+}
@@ -0,0 +1,415 @@
+package org.schabi.newpipe.player.playqueue;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.schabi.newpipe.MainActivity;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.player.playqueue.events.AppendEvent;
+import org.schabi.newpipe.player.playqueue.events.MoveEvent;
+import org.schabi.newpipe.player.playqueue.events.PlayQueueEvent;
+import org.schabi.newpipe.player.playqueue.events.RecoveryEvent;
+import org.schabi.newpipe.player.playqueue.events.RemoveEvent;
+import org.schabi.newpipe.player.playqueue.events.SelectEvent;
+import org.schabi.newpipe.util.InfoCache;
+import org.schabi.newpipe.util.ServiceHelper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the last {@link PlayQueue} played on disk, so it can be restored after the app process
+ * has been killed, which loses the queues handed over to the players in memory.
+ * <br><br>
+ * The queue is written as a snapshot when it is attached, and then as a journal of the changes
+ * made to it, so that playing through a large queue does not rewrite all of it on every change.
+ * Changes that cannot be replayed from the journal, such as shuffles, write a new snapshot
+ * instead, as does a journal grown too long. The playback position of the current item and
+ * its {@link StreamInfo} are kept along, so the restored queue resumes where it was left
+ * without waiting for extraction, as long as the stream info has not expired.
+ * <br><br>
+ * Changes are recorded synchronously by the queue under its lock, so the journal always
+ * matches the queue, while the files are written on a background thread. Whatever is costly
+ * to serialize, such as snapshots and stream infos, is serialized there too, from copies
+ * taken under the lock. Restoring is done on the same thread, after the pending writes.
+ * */
+public class PlayQueueJournal {
+    private static final String TAG = PlayQueueJournal.class.getSimpleName();
+    private static final boolean DEBUG = MainActivity.DEBUG;
+
+    private static final String SNAPSHOT_FILE = "play_queue_snapshot";
+    private static final String JOURNAL_FILE = "play_queue_journal";
+    private static final String STREAM_INFO_FILE = "play_queue_stream_info";
+
+    private static final int RECORD_SELECT = 1;
+    private static final int RECORD_MOVE = 2;
+    private static final int RECORD_REMOVE = 3;
+    private static final int RECORD_APPEND = 4;
+    private static final int RECORD_RECOVERY = 5;
+
+    /** Journals longer than this are replaced by a snapshot. */
+    private static final int MAXIMUM_RECORDS = 500;
+    /** Determines how often the playback position of the current item is recorded. */
+    private static final long POSITION_INTERVAL_MILLIS = 5000;
+
+    /** Shared by all journals, so the writes of a closing player are done before the next. */
+    private static final Scheduler WRITER_SCHEDULER =
+            Schedulers.from(Executors.newSingleThreadExecutor());
+
+    @NonNull private final File snapshotFile;
+    @NonNull private final File journalFile;
+    @NonNull private final File streamInfoFile;
+
+    @Nullable private PlayQueue queue;
+    private int recordCount;
+    private long lastPositionMillis;
+
+    public PlayQueueJournal(@NonNull final Context context) {
+        final File directory = context.getFilesDir();
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.streamInfoFile = new File(directory, STREAM_INFO_FILE);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Recording
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Starts recording the given queue, replacing the session recorded before.
+     * */
+    public void attach(@NonNull final PlayQueue queue) {
+        detach();
+        this.queue = queue;
+        synchronized (queue) {
+            queue.setJournal(this);
+            writeSnapshot(queue);
+        }
+        writeInBackground(streamInfoFile, null, /*append=*/false);
+    }
+
+    /**
+     * Stops recording the attached queue, its session is kept on disk to be restored.
+     * */
+    public void detach() {
+        if (queue != null) queue.setJournal(null);
+        queue = null;
+    }
+
+    /**
+     * Records the playback position of the item at the given index, as often as it is worth
+     * rewinding to after a restore.
+     * */
+    public void recordPosition(final int index, final long positionMillis) {
+        if (queue == null || Math.abs(positionMillis - lastPositionMillis) <
+                POSITION_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPositionMillis = positionMillis;
+
+        synchronized (queue) {
+            writeRecord(queue, RECORD_RECOVERY, index, positionMillis);
+        }
+    }
+
+    /**
+     * Keeps the stream info of the item being played, so it does not have to be extracted
+     * again when the session is restored shortly after.
+     * */
+    public void recordStreamInfo(@NonNull final PlayQueueItem item,
+                                 @NonNull final StreamInfo info) {
+        if (queue == null) return;
+
+        final int serviceId = item.getServiceId();
+        final String url = item.getUrl();
+        final long savedMillis = System.currentTimeMillis();
+        WRITER_SCHEDULER.scheduleDirect(() -> {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                final ObjectOutputStream output = new ObjectOutputStream(bytes);
+                output.writeInt(serviceId);
+                output.writeUTF(url);
+                output.writeLong(savedMillis);
+                output.writeObject(info);
+                output.close();
+                writeFile(streamInfoFile, bytes.toByteArray(), /*append=*/false);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write stream info of " + url, e);
+            }
+        });
+    }
+
+    /**
+     * Called by the queue on every change, while it holds its lock.
+     * */
+    void onPlayQueueChanged(@NonNull final PlayQueue queue,
+                            @NonNull final PlayQueueEvent event) {
+        if (queue != this.queue) return;
+
+        switch (event.type()) {
+            case SELECT:
+                writeRecord(queue, RECORD_SELECT, ((SelectEvent) event).getNewIndex(), 0);
+                break;
+            case MOVE:
+                final MoveEvent moveEvent = (MoveEvent) event;
+                writeRecord(queue, RECORD_MOVE, moveEvent.getFromIndex(), moveEvent.getToIndex());
+                break;
+            case REMOVE:
+                writeRecord(queue, RECORD_REMOVE, ((RemoveEvent) event).getRemoveIndex(), 0);
+                break;
+            case RECOVERY:
+                final RecoveryEvent recoveryEvent = (RecoveryEvent) event;
+                writeRecord(queue, RECORD_RECOVERY, recoveryEvent.getIndex(),
+                        recoveryEvent.getPosition());
+                break;
+            case APPEND:
+                // Items appended to shuffled queues are shuffled, which cannot be replayed
+                final int amount = ((AppendEvent) event).getAmount();
+                if (!queue.isShuffled()) {
+                    writeAppendRecord(queue, amount);
+                } else {
+                    writeSnapshot(queue);
+                }
+                break;
+            case INIT:
+            case REORDER:
+            case ERROR:
+            default:
+                writeSnapshot(queue);
+                break;
+        }
+    }
+
+    private void writeSnapshot(@NonNull final PlayQueue queue) {
+        writeSnapshotInBackground(queue.snapshot());
+    }
+
+    private void writeSnapshotInBackground(@NonNull final PlayQueue snapshot) {
+        recordCount = 0;
+        WRITER_SCHEDULER.scheduleDirect(() -> {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+            try {
+                final ObjectOutputStream output = new ObjectOutputStream(bytes);
+                output.writeObject(snapshot);
+                output.close();
+
+                writeFile(temporaryFile, bytes.toByteArray(), /*append=*/false);
+                // Renaming is atomic, a restore sees either the old or the new snapshot
+                if (!temporaryFile.renameTo(snapshotFile)) {
+                    throw new IOException("Unable to replace " + snapshotFile);
+                }
+                writeFile(journalFile, new byte[0], /*append=*/false);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write play queue snapshot", e);
+            }
+        });
+    }
+
+    private void writeRecord(@NonNull final PlayQueue queue, final int type,
+                             final int index, final long value) {
+        if (recordCount >= MAXIMUM_RECORDS) {
+            final PlayQueue snapshot = queue.snapshot();
+            // Positions from recordPosition are only kept by the journal, not by the queue
+            if (type == RECORD_RECOVERY) snapshot.setRecovery(index, value);
+            writeSnapshotInBackground(snapshot);
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(type);
+            output.writeInt(index);
+            output.writeLong(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not possible on a byte array
+        }
+        recordCount++;
+        writeInBackground(journalFile, bytes.toByteArray(), /*append=*/true);
+    }
+
+    private void writeAppendRecord(@NonNull final PlayQueue queue, final int amount) {
+        final List<PlayQueueItem> streams = queue.getStreams();
+        final List<PlayQueueItem> appended = new ArrayList<>(
+                streams.subList(streams.size() - amount, streams.size()));
+        recordCount++;
+        WRITER_SCHEDULER.scheduleDirect(() -> {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(bytes);
+            try {
+                output.writeByte(RECORD_APPEND);
+                PlayQueueCodec.writeItems(output, appended);
+                writeFile(journalFile, bytes.toByteArray(), /*append=*/true);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write appended items", e);
+            }
+        });
+    }
+
+    private void writeInBackground(@NonNull final File file, @Nullable final byte[] data,
+                                   final boolean append) {
+        WRITER_SCHEDULER.scheduleDirect(() -> {
+            try {
+                if (data == null) {
+                    if (file.exists() && !file.delete()) {
+                        throw new IOException("Unable to delete " + file);
+                    }
+                } else {
+                    writeFile(file, data, append);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write " + file, e);
+            }
+        });
+    }
+
+    private static void writeFile(@NonNull final File file, @NonNull final byte[] data,
+                                  final boolean append) throws IOException {
+        final OutputStream output = new FileOutputStream(file, append);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Restoring
+    //////////////////////////////////////////////////////////////////////////*/
+
+    /**
+     * Reads the last recorded session on the writer thread, once the writes still pending
+     * are done, and puts the stream info of its current item back into the {@link InfoCache}
+     * if it is still valid.
+     *
+     * @return a maybe of the restored queue, not yet initialized, which is empty if there
+     * is none
+     * */
+    @NonNull
+    public Maybe<PlayQueue> restore() {
+        return Maybe.fromCallable(this::readSession).subscribeOn(WRITER_SCHEDULER);
+    }
+
+    @Nullable
+    private PlayQueue readSession() {
+        final long startMillis = System.currentTimeMillis();
+        final PlayQueue restored;
+        try {
+            restored = readSnapshot();
+            if (restored == null) return null;
+            replayJournal(restored);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            Log.e(TAG, "Unable to restore the last play queue", e);
+            return null;
+        }
+        restoreStreamInfo();
+
+        if (DEBUG) Log.d(TAG, "readSession() done with " + restored.size() + " items in " +
+                (System.currentTimeMillis() - startMillis) + " ms");
+        return restored;
+    }
+
+    @Nullable
+    private PlayQueue readSnapshot() throws IOException, ClassNotFoundException {
+        if (!snapshotFile.exists()) return null;
+
+        final ObjectInputStream input = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(snapshotFile)));
+        try {
+            return (PlayQueue) input.readObject();
+        } finally {
+            input.close();
+        }
+    }
+
+    private void replayJournal(@NonNull final PlayQueue restored) throws IOException {
+        if (!journalFile.exists()) return;
+
+        final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(journalFile)));
+        try {
+            while (true) {
+                final int type = input.read();
+                if (type == -1) break;
+                replayRecord(restored, type, input);
+            }
+        } catch (EOFException e) {
+            // The last record was cut short by the process being killed while writing it
+            if (DEBUG) Log.d(TAG, "Ignoring incomplete journal record");
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void replayRecord(@NonNull final PlayQueue restored, final int type,
+                                     @NonNull final DataInputStream input) throws IOException {
+        if (type == RECORD_APPEND) {
+            restored.append(PlayQueueCodec.readItems(input));
+            return;
+        }
+
+        final int index = input.readInt();
+        final long value = input.readLong();
+        switch (type) {
+            case RECORD_SELECT:
+                restored.setIndex(index);
+                break;
+            case RECORD_MOVE:
+                restored.move(index, (int) value);
+                break;
+            case RECORD_REMOVE:
+                restored.remove(index);
+                break;
+            case RECORD_RECOVERY:
+                restored.setRecovery(index, value);
+                break;
+            default:
+                throw new IOException("Unknown journal record: " + type);
+        }
+    }
+
+    private void restoreStreamInfo() {
+        if (!streamInfoFile.exists()) return;
+
+        try {
+            final ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(streamInfoFile)));
+            try {
+                final int serviceId = input.readInt();
+                final String url = input.readUTF();
+                final long savedMillis = input.readLong();
+                final StreamInfo info = (StreamInfo) input.readObject();
+
+                final long remainingMillis = savedMillis - System.currentTimeMillis() +
+                        ServiceHelper.getCacheExpirationMillis(serviceId);
+                if (remainingMillis > 0) {
+                    InfoCache.getInstance().putInfo(serviceId, url, info, remainingMillis);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            Log.e(TAG, "Unable to restore the stream info of the last play queue", e);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package org.schabi.newpipe.settings;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -17,7 +19,9 @@ import android.widget.Toast;
 import com.nononsenseapps.filepicker.Utils;
 import com.nostra13.universalimageloader.core.ImageLoader;
 
+import org.schabi.newpipe.NewPipeDatabase;
 import org.schabi.newpipe.R;
+import org.schabi.newpipe.database.DatabaseSnapshot;
 import org.schabi.newpipe.extractor.NewPipe;
 import org.schabi.newpipe.extractor.StreamingService;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
@@ -45,6 +49,12 @@ import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 import static android.content.Context.MODE_PRIVATE;
 
 public class ContentSettingsFragment extends BasePreferenceFragment {
@@ -54,18 +64,28 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
 
     private String homeDir;
     private File databasesDir;
-    private File newpipe_db;
-    private File newpipe_db_journal;
     private File newpipe_settings;
 
     private String thumbnailLoadToggleKey;
 
+    private Disposable exportDisposable;
+    private ProgressDialog exportProgressDialog;
+    private Disposable importDisposable;
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         thumbnailLoadToggleKey = getString(R.string.download_thumbnail_key);
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (exportDisposable != null) exportDisposable.dispose();
+        if (exportProgressDialog != null) exportProgressDialog.dismiss();
+        if (importDisposable != null) importDisposable.dispose();
+    }
+
     @Override
     public boolean onPreferenceTreeClick(Preference preference) {
         if (preference.getKey().equals(thumbnailLoadToggleKey)) {
@@ -86,8 +106,6 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
 
         homeDir = getActivity().getApplicationInfo().dataDir;
         databasesDir = new File(homeDir + "/databases");
-        newpipe_db = new File(homeDir + "/databases/newpipe.db");
-        newpipe_db_journal = new File(homeDir + "/databases/newpipe.db-journal");
         newpipe_settings = new File(homeDir + "/databases/newpipe.settings");
         newpipe_settings.delete();
 
@@ -202,29 +220,67 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
     }
 
     private void exportDatabase(String path) {
-        try {
-            ZipOutputStream outZip = new ZipOutputStream(
-                    new BufferedOutputStream(
-                            new FileOutputStream(path)));
-            ZipHelper.addFileToZip(outZip, newpipe_db.getPath(), "newpipe.db");
-            ZipHelper.addFileToZip(outZip, newpipe_db_journal.getPath(), "newpipe.db-journal");
-            saveSharedPreferencesToFile(newpipe_settings);
-            ZipHelper.addFileToZip(outZip, newpipe_settings.getPath(), "newpipe.settings");
-
-            outZip.close();
-
-            Toast.makeText(getContext(), R.string.export_complete_toast, Toast.LENGTH_SHORT)
-                    .show();
-        } catch (Exception e) {
-            onError(e);
-        }
+        final Context context = getContext().getApplicationContext();
+        final File snapshot = new File(context.getCacheDir(), "newpipe.db.export");
+
+        if (exportDisposable != null) exportDisposable.dispose();
+        if (exportProgressDialog != null) exportProgressDialog.dismiss();
+
+        final ProgressDialog progressDialog = new ProgressDialog(getActivity());
+        progressDialog.setMessage(getString(R.string.export_ongoing));
+        progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        progressDialog.setMax(100);
+        progressDialog.setCancelable(false);
+        progressDialog.show();
+        exportProgressDialog = progressDialog;
+
+        exportDisposable = Observable.<Integer>create(emitter -> {
+            boolean isExported = false;
+            try {
+                // Copying the live files could tear them while they are written to
+                DatabaseSnapshot.create(context, snapshot);
+                saveSharedPreferencesToFile(context, newpipe_settings);
+
+                final ZipOutputStream outZip = new ZipOutputStream(
+                        new BufferedOutputStream(
+                                new FileOutputStream(path)));
+                try {
+                    ZipHelper.addFileToZip(outZip, snapshot.getPath(), "newpipe.db",
+                            (bytesWritten, totalBytes) -> {
+                                if (totalBytes > 0) {
+                                    emitter.onNext((int) (bytesWritten * 100 / totalBytes));
+                                }
+                            });
+                    ZipHelper.addFileToZip(outZip, newpipe_settings.getPath(), "newpipe.settings");
+                } finally {
+                    outZip.close();
+                }
+                isExported = true;
+            } finally {
+                snapshot.delete();
+                // Failed or cancelled exports leave no partial archive behind
+                if (!isExported) new File(path).delete();
+            }
+            emitter.onComplete();
+        })
+                .distinctUntilChanged()
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doFinally(() -> {
+                    progressDialog.dismiss();
+                    if (exportProgressDialog == progressDialog) exportProgressDialog = null;
+                })
+                .subscribe(progressDialog::setProgress, this::onError, () -> {
+                    Toast.makeText(context, R.string.export_complete_toast, Toast.LENGTH_SHORT)
+                            .show();
+                });
     }
 
-    private void saveSharedPreferencesToFile(File dst) {
+    private void saveSharedPreferencesToFile(Context context, File dst) {
         ObjectOutputStream output = null;
         try {
             output = new ObjectOutputStream(new FileOutputStream(dst));
-            SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+            SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(context);
             output.writeObject(pref.getAll());
 
         } catch (FileNotFoundException e) {
@@ -258,17 +314,48 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
             } catch (Exception e){}
         }
 
-        try {
-            if (!databasesDir.exists() && !databasesDir.mkdir()) {
-                throw new Exception("Could not create databases dir");
-            }
+        final Context context = getContext().getApplicationContext();
+        final File extractedDb = new File(context.getCacheDir(), "newpipe.db.import");
+        final File importedDb = NewPipeDatabase.getImportedDatabaseFile(context);
+
+        if (importDisposable != null) importDisposable.dispose();
+        importDisposable = Single.fromCallable(() -> {
+            try {
+                if (!databasesDir.exists() && !databasesDir.mkdir()) {
+                    throw new Exception("Could not create databases dir");
+                }
 
-            if(!(ZipHelper.extractFileFromZip(filePath, newpipe_db.getPath(), "newpipe.db")
-                    && ZipHelper.extractFileFromZip(filePath, newpipe_db_journal.getPath(), "newpipe.db-journal"))) {
-                Toast.makeText(getContext(), R.string.could_not_import_all_files, Toast.LENGTH_LONG)
-                        .show();
+                // Only stage the imported database once it is known to be usable
+                if (!ZipHelper.extractFileFromZip(filePath, extractedDb.getPath(), "newpipe.db")
+                        || !DatabaseSnapshot.isValid(extractedDb)) {
+                    return false;
+                }
+
+                // Players and background updates keep writing to the current database,
+                // so it is only replaced by the imported one when the app restarts
+                if ((importedDb.exists() && !importedDb.delete())
+                        || !extractedDb.renameTo(importedDb)) {
+                    throw new Exception("Could not stage imported database");
+                }
+                return true;
+            } finally {
+                extractedDb.delete();
             }
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(isImported -> {
+                    if (isImported) {
+                        onDatabaseImported(filePath);
+                    } else {
+                        Toast.makeText(context, R.string.import_invalid_database,
+                                Toast.LENGTH_LONG).show();
+                    }
+                }, this::onError);
+    }
 
+    private void onDatabaseImported(String filePath) {
+        try {
             //If settings file exist, ask if it should be imported.
             if(ZipHelper.extractFileFromZip(filePath, newpipe_settings.getPath(), "newpipe.settings")) {
                 AlertDialog.Builder alert = new AlertDialog.Builder(getContext());
@@ -285,6 +372,7 @@ public class ContentSettingsFragment extends BasePreferenceFragment {
                     // restart app to properly load db
                     System.exit(0);
                 });
+                alert.setCancelable(false);
                 alert.show();
             } else {
                 // restart app to properly load db
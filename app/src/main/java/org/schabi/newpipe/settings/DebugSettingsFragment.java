@@ -1,12 +1,36 @@
 package org.schabi.newpipe.settings;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.support.v7.preference.Preference;
+import android.widget.Toast;
 
 import org.schabi.newpipe.R;
+import org.schabi.newpipe.player.helper.StartupTracer;
 
 public class DebugSettingsFragment extends BasePreferenceFragment {
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         addPreferencesFromResource(R.xml.debug_settings);
+
+        Preference exportStartupTracesPreference = findPreference(getString(R.string.export_startup_traces_key));
+        exportStartupTracesPreference.setOnPreferenceClickListener((Preference p) -> {
+            exportStartupTraces();
+            return true;
+        });
+    }
+
+    private void exportStartupTraces() {
+        final String traces = StartupTracer.getInstance().export();
+        if (traces.isEmpty()) {
+            Toast.makeText(getContext(), R.string.no_startup_traces, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.export_startup_traces_title));
+        intent.putExtra(Intent.EXTRA_TEXT, traces);
+        startActivity(Intent.createChooser(intent, getString(R.string.share_dialog_title)));
     }
 }
@@ -63,9 +63,17 @@ public final class InfoCache {
     }
 
     public void putInfo(int serviceId, @NonNull String url, @NonNull Info info) {
+        putInfo(serviceId, url, info, ServiceHelper.getCacheExpirationMillis(info.getServiceId()));
+    }
+
+    /**
+     * Same as {@link #putInfo(int, String, Info)}, but for info extracted some time ago,
+     * which is only valid for the given remaining time.
+     * */
+    public void putInfo(int serviceId, @NonNull String url, @NonNull Info info,
+                        final long expirationMillis) {
         if (DEBUG) Log.d(TAG, "putInfo() called with: info = [" + info + "]");
 
-        final long expirationMillis = ServiceHelper.getCacheExpirationMillis(info.getServiceId());
         synchronized (lruCache) {
             final CacheData data = new CacheData(info, expirationMillis);
             lruCache.put(keyOf(serviceId, url), data);
@@ -16,6 +16,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @SuppressWarnings("WeakerAccess")
 public final class ListHelper {
@@ -31,6 +33,18 @@ public final class ListHelper {
     private static final List<MediaFormat> AUDIO_FORMAT_EFFICIENCY_RANKING =
             Arrays.asList(MediaFormat.WEBMA, MediaFormat.M4A, MediaFormat.MP3);
 
+    /** Typical bitrates of the resolutions streams come in, in bits per second. */
+    private static final int[] RESOLUTION_HEIGHTS = {144, 240, 360, 480, 720, 1080, 1440, 2160};
+    private static final long[] RESOLUTION_BITRATES =
+            {100_000, 250_000, 600_000, 1_100_000, 2_500_000, 4_500_000, 9_000_000, 18_000_000};
+    private static final long AUDIO_BITRATE = 128_000;
+    private static final Pattern RESOLUTION_PATTERN = Pattern.compile("(\\d+)p(\\d+)?");
+
+    /** Share of the bandwidth a stream may take up, leaving room for fluctuations. */
+    private static final float BANDWIDTH_FRACTION = 0.75f;
+    /** Time the start buffer of a stream may take to load. */
+    private static final int STARTUP_LATENCY_TARGET_MILLIS = 1000;
+
     private static final List<String> HIGH_RESOLUTION_LIST = Arrays.asList("1440p", "2160p", "1440p60", "2160p60");
 
     /**
@@ -330,6 +344,100 @@ public final class ListHelper {
         return lowerResMatchNoRefreshIndex;
     }
 
+    /**
+     * Lowers the preferred resolution until the stream is likely to play on the given bandwidth.
+     * <br><br>
+     * A stream fits if its bitrate takes up no more than {@link #BANDWIDTH_FRACTION} of the
+     * bandwidth, so playback keeps up once started, and if its start buffer loads within
+     * {@link #STARTUP_LATENCY_TARGET_MILLIS}, so playback starts quickly. The preferred stream is
+     * kept while there is no estimate, the lowest one is taken if none fits.
+     *
+     * @param preferredIndex    index of the preferred stream in the sorted list
+     * @param sortedVideos      streams sorted from the greatest to the smallest resolution
+     * @param bitrateEstimate   estimated bandwidth in bits per second, or a negative value
+     * @param startBufferMillis duration buffered before playback starts
+     * @return index of the preferred stream or of a lower resolution one
+     */
+    public static int getBandwidthLimitedResolutionIndex(int preferredIndex,
+                                                         List<VideoStream> sortedVideos,
+                                                         long bitrateEstimate,
+                                                         int startBufferMillis) {
+        if (preferredIndex < 0 || preferredIndex >= sortedVideos.size() || bitrateEstimate <= 0) {
+            return preferredIndex;
+        }
+
+        float share = BANDWIDTH_FRACTION;
+        if (startBufferMillis > 0) {
+            share = Math.min(share, STARTUP_LATENCY_TARGET_MILLIS / (float) startBufferMillis);
+        }
+        final long maximumBitrate = (long) (bitrateEstimate * share);
+
+        for (int idx = preferredIndex; idx < sortedVideos.size(); idx++) {
+            if (getEstimatedBitrate(sortedVideos.get(idx)) <= maximumBitrate) {
+                return idx;
+            }
+        }
+        return sortedVideos.size() - 1;
+    }
+
+    /**
+     * Finds the stream to start playback with before switching to the target stream, which is
+     * the one with the lowest bitrate of the same format and kind, so both play through the same
+     * decoder and are merged with the same audio.
+     *
+     * @param targetIndex  index of the stream to switch to
+     * @param sortedVideos streams sorted from the greatest to the smallest resolution
+     * @return index of the stream to start with, or the target index if there is no lower one
+     */
+    public static int getFastStartResolutionIndex(int targetIndex, List<VideoStream> sortedVideos) {
+        if (targetIndex < 0 || targetIndex >= sortedVideos.size()) {
+            return targetIndex;
+        }
+
+        final VideoStream target = sortedVideos.get(targetIndex);
+        int fastStartIndex = targetIndex;
+        long lowestBitrate = getEstimatedBitrate(target);
+        for (int idx = targetIndex + 1; idx < sortedVideos.size(); idx++) {
+            final VideoStream candidate = sortedVideos.get(idx);
+            final long bitrate = getEstimatedBitrate(candidate);
+            if (candidate.getFormat() == target.getFormat() &&
+                    candidate.isVideoOnly() == target.isVideoOnly() &&
+                    bitrate > 0 && bitrate < lowestBitrate) {
+                fastStartIndex = idx;
+                lowestBitrate = bitrate;
+            }
+        }
+        return fastStartIndex;
+    }
+
+    /**
+     * Estimates the bitrate of a stream from its resolution and frame rate, as the streams do
+     * not carry their own. The audio of video only streams is included, as it loads alongside.
+     *
+     * @return the estimated bitrate in bits per second, or 0 if the resolution is unknown
+     */
+    public static long getEstimatedBitrate(VideoStream videoStream) {
+        final Matcher matcher = RESOLUTION_PATTERN.matcher(videoStream.getResolution());
+        if (!matcher.find()) {
+            return 0;
+        }
+
+        final int height = Integer.parseInt(matcher.group(1));
+        int tier = 0;
+        while (tier < RESOLUTION_HEIGHTS.length - 1 && RESOLUTION_HEIGHTS[tier] < height) {
+            tier++;
+        }
+
+        long bitrate = RESOLUTION_BITRATES[tier];
+        if (matcher.group(2) != null && Integer.parseInt(matcher.group(2)) > 30) {
+            bitrate = bitrate * 3 / 2;
+        }
+        if (videoStream.isVideoOnly()) {
+            bitrate += AUDIO_BITRATE;
+        }
+        return bitrate;
+    }
+
     /**
      * Fetches the desired resolution or returns the default if it is not found. The resolution
      * will be reduced if video chocking is active.
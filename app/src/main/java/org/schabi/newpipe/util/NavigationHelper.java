@@ -47,6 +47,7 @@ import org.schabi.newpipe.player.MainVideoPlayer;
 import org.schabi.newpipe.player.PopupVideoPlayer;
 import org.schabi.newpipe.player.PopupVideoPlayerActivity;
 import org.schabi.newpipe.player.VideoPlayer;
+import org.schabi.newpipe.player.helper.StartupTracer;
 import org.schabi.newpipe.player.old.PlayVideoActivity;
 import org.schabi.newpipe.player.playqueue.PlayQueue;
 import org.schabi.newpipe.settings.SettingsActivity;
@@ -108,7 +109,10 @@ public class NavigationHelper {
     }
 
     public static void playOnMainPlayer(final Context context, final PlayQueue queue) {
+        final StartupTracer startupTracer = StartupTracer.getInstance();
+        startupTracer.begin(context, "main_player");
         final Intent playerIntent = getPlayerIntent(context, MainVideoPlayer.class, queue);
+        startupTracer.mark("queue_serialized");
         playerIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
         context.startActivity(playerIntent);
     }
@@ -139,13 +143,21 @@ public class NavigationHelper {
             return;
         }
 
+        final StartupTracer startupTracer = StartupTracer.getInstance();
+        startupTracer.begin(context, "popup_player");
         Toast.makeText(context, R.string.popup_playing_toast, Toast.LENGTH_SHORT).show();
-        startService(context, getPlayerIntent(context, PopupVideoPlayer.class, queue));
+        final Intent playerIntent = getPlayerIntent(context, PopupVideoPlayer.class, queue);
+        startupTracer.mark("queue_serialized");
+        startService(context, playerIntent);
     }
 
     public static void playOnBackgroundPlayer(final Context context, final PlayQueue queue) {
+        final StartupTracer startupTracer = StartupTracer.getInstance();
+        startupTracer.begin(context, "background_player");
         Toast.makeText(context, R.string.background_player_playing_toast, Toast.LENGTH_SHORT).show();
-        startService(context, getPlayerIntent(context, BackgroundPlayer.class, queue));
+        final Intent playerIntent = getPlayerIntent(context, BackgroundPlayer.class, queue);
+        startupTracer.mark("queue_serialized");
+        startService(context, playerIntent);
     }
 
     public static void enqueueOnPopupPlayer(final Context context, final PlayQueue queue) {
@@ -32,6 +32,10 @@ public class ZipHelper {
 
     private static final int BUFFER_SIZE = 2048;
 
+    public interface OnProgressListener {
+        void onProgress(long bytesWritten, long totalBytes);
+    }
+
     /**
      * This function helps to create zip files.
      * Caution this will override the original file.
@@ -41,7 +45,20 @@ public class ZipHelper {
      * @throws Exception
      */
     public static void addFileToZip(ZipOutputStream outZip, String file, String name) throws Exception {
+        addFileToZip(outZip, file, name, null);
+    }
+
+    /**
+     * Same as {@link #addFileToZip(ZipOutputStream, String, String)}, but reports
+     * how much of the file has been written to the zip so far.
+     * @param listener Called after every written chunk, may be null.
+     * @throws Exception
+     */
+    public static void addFileToZip(ZipOutputStream outZip, String file, String name,
+                                    OnProgressListener listener) throws Exception {
         byte data[] = new byte[BUFFER_SIZE];
+        final long totalBytes = new File(file).length();
+        long bytesWritten = 0;
         FileInputStream fi = new FileInputStream(file);
         BufferedInputStream inputStream = new BufferedInputStream(fi, BUFFER_SIZE);
         ZipEntry entry = new ZipEntry(name);
@@ -49,6 +66,8 @@ public class ZipHelper {
         int count;
         while((count = inputStream.read(data, 0, BUFFER_SIZE)) != -1) {
             outZip.write(data, 0, count);
+            bytesWritten += count;
+            if (listener != null) listener.onProgress(bytesWritten, totalBytes);
         }
         inputStream.close();
     }
@@ -0,0 +1,85 @@
+package org.schabi.newpipe.database;
+
+import android.arch.persistence.room.Room;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.schabi.newpipe.util.BenchmarkReport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the hot DAO queries on a {@link SyntheticLibrary#LARGE large library}, comparing
+ * their median timings with the baseline in {@code dao_benchmark_baseline.properties}. The
+ * measured timings are written to {@code build/reports/dao-benchmark.properties}, which can be
+ * copied over the baseline whenever a change to the schema or the queries is expected to move
+ * them. Their query plans are checked by {@link DaoQueryPlanTest} with the unit tests.
+ * <p>
+ * Populating the library takes a while, so the benchmark only runs with the {@code benchmark}
+ * task.
+ * */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class DaoBenchmarkTest {
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    /** Timings vary a lot between machines, only a multiple of the baseline is a regression. */
+    private static final double REGRESSION_FACTOR = 3.0;
+    /** Queries faster than this are too noisy to compare against the baseline. */
+    private static final long MINIMUM_COMPARED_MILLIS = 5;
+
+    private static final String BASELINE_RESOURCE = "/dao_benchmark_baseline.properties";
+
+    private static AppDatabase database;
+    private static Properties baseline;
+    private static final BenchmarkReport report = new BenchmarkReport("dao-benchmark",
+            "Median DAO query timings in milliseconds", TimeUnit.MILLISECONDS);
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        database = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.application, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        SyntheticLibrary.LARGE.populate(database, new Random(42));
+        baseline = BenchmarkReport.loadBaseline(BASELINE_RESOURCE);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        database.close();
+        report.write();
+    }
+
+    @Test
+    public void hotQueriesStayWithinBaseline() {
+        // Every query is measured before failing, so the report is complete
+        final List<String> regressions = new ArrayList<>();
+        for (final DaoWorkload workload : DaoWorkload.all(database)) {
+            final long median = report.measure(workload.name, WARMUP_RUNS, MEASURED_RUNS,
+                    workload.run);
+
+            final String expected = baseline.getProperty(workload.name);
+            if (expected == null) continue;
+            final long limit = (long) (Math.max(Long.parseLong(expected), MINIMUM_COMPARED_MILLIS)
+                    * REGRESSION_FACTOR);
+            if (median > limit) {
+                regressions.add(String.format(Locale.US, "%s took %d ms, baseline is %s ms",
+                        workload.name, median, expected));
+            }
+        }
+        assertTrue(regressions.toString(), regressions.isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package org.schabi.newpipe.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the query plans of all statements the hot DAO queries run, failing on full scans of
+ * library tables they are not expected to scan. Plans only depend on the schema and the
+ * queries, so a small library is enough, while their timings are left to
+ * {@link DaoBenchmarkTest}.
+ * */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class DaoQueryPlanTest {
+    private static final Set<String> LIBRARY_TABLES = new HashSet<>(Arrays.asList(
+            "streams", "stream_history", "subscriptions", "playlists", "playlist_stream_join"));
+    /** Matches full scans in both the old and the current format of query plan details. */
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)");
+
+    private AppDatabase database;
+    private RecordingOpenHelperFactory recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new RecordingOpenHelperFactory();
+        database = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.application, AppDatabase.class)
+                .openHelperFactory(recorder)
+                .allowMainThreadQueries()
+                .build();
+        SyntheticLibrary.SMALL.populate(database, new Random(42));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void hotQueriesOnlyScanExpectedTables() {
+        for (final DaoWorkload workload : DaoWorkload.all(database)) {
+            recorder.startRecording();
+            workload.run.run(0);
+            final List<String> statements = recorder.stopRecording();
+
+            assertFalse(workload.name + " ran no statements", statements.isEmpty());
+            for (final String sql : statements) {
+                assertQueryPlan(workload.name, sql, workload.allowedScans);
+            }
+        }
+    }
+
+    private void assertQueryPlan(final String name, final String sql,
+                                 final Set<String> allowedScans) {
+        final SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        final Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql);
+        try {
+            final int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                final String detail = cursor.getString(detailColumn);
+                final Matcher matcher = FULL_SCAN.matcher(detail);
+                if (!matcher.find()) continue;
+
+                final String table = matcher.group(1);
+                assertTrue(String.format("%s scans %s in [%s]", name, table, sql),
+                        !LIBRARY_TABLES.contains(table) || allowedScans.contains(table));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.schabi.newpipe.database;
+
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.util.BenchmarkReport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.schabi.newpipe.database.SyntheticLibrary.streamOf;
+import static org.schabi.newpipe.database.SyntheticLibrary.subscriptionOf;
+
+/**
+ * A hot DAO query, run the way the app runs it on a {@link SyntheticLibrary}, along with the
+ * library tables its query plans are expected to scan in full.
+ * <p>
+ * Workloads writing to the library run {@link #rolledBack(AppDatabase, BenchmarkReport.Run)
+ * rolled back}, so each one finds it in the same state whatever order they run in.
+ * */
+final class DaoWorkload {
+    final String name;
+    final Set<String> allowedScans;
+    final BenchmarkReport.Run run;
+
+    private DaoWorkload(final String name, final Set<String> allowedScans,
+                        final BenchmarkReport.Run run) {
+        this.name = name;
+        this.allowedScans = allowedScans;
+        this.run = run;
+    }
+
+    static List<DaoWorkload> all(final AppDatabase database) {
+        final List<StreamEntity> streams = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            streams.add(streamOf(i * 7));
+        }
+        final List<SubscriptionEntity> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            subscriptions.add(subscriptionOf(i * 10));
+        }
+
+        return Arrays.asList(
+                // The access date has no index, so the lookup and the maximum scan the history
+                new DaoWorkload("StreamHistoryDAO.getLatestEntry", scanning("stream_history"),
+                        iteration -> assertNotNull(database.streamHistoryDAO().getLatestEntry())),
+                new DaoWorkload("StreamHistoryDAO.getHistory", scanning("stream_history"),
+                        iteration -> database.streamHistoryDAO().getHistory().blockingFirst()),
+                new DaoWorkload("StreamHistoryDAO.getStatistics", scanning("stream_history"),
+                        iteration -> database.streamHistoryDAO().getStatistics().blockingFirst()),
+                new DaoWorkload("StreamHistoryDAO.deleteStreamHistory", scanning(),
+                        rolledBack(database, iteration -> database.streamHistoryDAO()
+                                .deleteStreamHistory(iteration + 1))),
+                new DaoWorkload("PlaylistStreamDAO.getPlaylistMetadata", scanning("playlists"),
+                        iteration -> database.playlistStreamDAO().getPlaylistMetadata()
+                                .blockingFirst()),
+                new DaoWorkload("PlaylistStreamDAO.getOrderedStreamsOf", scanning(),
+                        iteration -> database.playlistStreamDAO()
+                                .getOrderedStreamsOf(iteration + 1).blockingFirst()),
+                new DaoWorkload("StreamDAO.deleteOrphans", scanning("streams"),
+                        rolledBack(database, iteration ->
+                                assertTrue(database.streamDAO().deleteOrphans(500) > 0))),
+                new DaoWorkload("StreamDAO.upsertAll", scanning(),
+                        rolledBack(database, iteration ->
+                                database.streamDAO().upsertAll(streams))),
+                new DaoWorkload("SubscriptionDAO.upsertAll", scanning(),
+                        rolledBack(database, iteration ->
+                                database.subscriptionDAO().upsertAll(subscriptions))),
+                new DaoWorkload("SubscriptionDAO.getSubscription", scanning(),
+                        iteration -> assertFalse(database.subscriptionDAO()
+                                .getSubscription(0, subscriptionOf(iteration).getUrl())
+                                .blockingFirst().isEmpty())));
+    }
+
+    private static Set<String> scanning(final String... tables) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tables)));
+    }
+
+    /**
+     * Runs a writing workload in a transaction which is rolled back, so it leaves the library
+     * as it found it. Only synchronous DAO methods may run this way, as queries returning
+     * flowables run on another thread, which waits for the transaction to end.
+     * */
+    private static BenchmarkReport.Run rolledBack(final AppDatabase database,
+                                                  final BenchmarkReport.Run run) {
+        return iteration -> {
+            database.beginTransaction();
+            try {
+                run.run(iteration);
+            } finally {
+                database.endTransaction();
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package org.schabi.newpipe.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Opens databases through the framework helper, while recording the SQL of every query and
+ * compiled statement Room runs, so their query plans can be inspected afterwards.
+ * */
+final class RecordingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+    private final SupportSQLiteOpenHelper.Factory delegate = new FrameworkSQLiteOpenHelperFactory();
+
+    private final Set<String> statements = new LinkedHashSet<>();
+    private volatile boolean isRecording = false;
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        final SupportSQLiteOpenHelper helper = delegate.create(configuration);
+        return proxy(SupportSQLiteOpenHelper.class, (proxy, method, args) -> {
+            final Object result = invoke(helper, method, args);
+            return result instanceof SupportSQLiteDatabase
+                    ? recording((SupportSQLiteDatabase) result) : result;
+        });
+    }
+
+    void startRecording() {
+        synchronized (statements) {
+            statements.clear();
+        }
+        isRecording = true;
+    }
+
+    /**
+     * @return the distinct statements run since {@link #startRecording()}, in order
+     * */
+    List<String> stopRecording() {
+        isRecording = false;
+        synchronized (statements) {
+            return new ArrayList<>(statements);
+        }
+    }
+
+    private SupportSQLiteDatabase recording(final SupportSQLiteDatabase database) {
+        return proxy(SupportSQLiteDatabase.class, (proxy, method, args) -> {
+            if (isRecording && args != null && args.length > 0) {
+                final String name = method.getName();
+                if (name.equals("query") && args[0] instanceof SupportSQLiteQuery) {
+                    record(((SupportSQLiteQuery) args[0]).getSql());
+                } else if ((name.equals("query") || name.equals("compileStatement"))
+                        && args[0] instanceof String) {
+                    record((String) args[0]);
+                }
+            }
+            return invoke(database, method, args);
+        });
+    }
+
+    private void record(final String sql) {
+        // Skip the bookkeeping of Room's invalidation tracker
+        if (sql.contains("room_table_modification_log")) return;
+        synchronized (statements) {
+            statements.add(sql);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
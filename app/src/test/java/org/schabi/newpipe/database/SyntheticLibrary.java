@@ -0,0 +1,102 @@
+package org.schabi.newpipe.database;
+
+import org.schabi.newpipe.database.history.model.StreamHistoryEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistEntity;
+import org.schabi.newpipe.database.playlist.model.PlaylistStreamEntity;
+import org.schabi.newpipe.database.stream.model.StreamEntity;
+import org.schabi.newpipe.database.subscription.SubscriptionEntity;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Fills a database with a library of streams, watch history, subscriptions and playlists,
+ * shaped like the one of a user, at a given scale.
+ * */
+final class SyntheticLibrary {
+    /** The size of a library after a few years of heavy use. */
+    static final SyntheticLibrary LARGE = new SyntheticLibrary(50_000, 20_000, 200_000, 10_000,
+            500, 40);
+    /** Small enough to populate quickly, with every kind of row the DAO queries look for. */
+    static final SyntheticLibrary SMALL = new SyntheticLibrary(500, 1_000, 2_000, 1_000,
+            10, 10);
+
+    final int streamCount;
+    final int orphanStreamCount;
+    final int historyCount;
+    final int subscriptionCount;
+    final int playlistCount;
+    final int playlistSize;
+
+    private SyntheticLibrary(final int streamCount, final int orphanStreamCount,
+                             final int historyCount, final int subscriptionCount,
+                             final int playlistCount, final int playlistSize) {
+        this.streamCount = streamCount;
+        this.orphanStreamCount = orphanStreamCount;
+        this.historyCount = historyCount;
+        this.subscriptionCount = subscriptionCount;
+        this.playlistCount = playlistCount;
+        this.playlistSize = playlistSize;
+    }
+
+    void populate(final AppDatabase database, final Random random) {
+        database.runInTransaction(() -> insert(database, random));
+    }
+
+    private void insert(final AppDatabase database, final Random random) {
+        // Orphaned streams come last, so the orphan deletion has to skip over all others
+        final List<StreamEntity> streams = new ArrayList<>(streamCount + orphanStreamCount);
+        for (int i = 0; i < streamCount + orphanStreamCount; i++) {
+            streams.add(streamOf(i));
+        }
+        database.streamDAO().insertAll(streams);
+
+        // Spread over roughly a year, with some streams watched far more often than others
+        final long firstAccess = 1_500_000_000_000L;
+        final List<StreamHistoryEntity> history = new ArrayList<>(historyCount);
+        for (int i = 0; i < historyCount; i++) {
+            final long streamId = 1 + (long) (streamCount * Math.pow(random.nextDouble(), 2));
+            history.add(new StreamHistoryEntity(streamId,
+                    new Date(firstAccess + i * 150_000L), 1 + random.nextInt(3)));
+        }
+        database.streamHistoryDAO().insertAll(history);
+
+        final List<SubscriptionEntity> subscriptions = new ArrayList<>(subscriptionCount);
+        for (int i = 0; i < subscriptionCount; i++) {
+            subscriptions.add(subscriptionOf(i));
+        }
+        database.subscriptionDAO().insertAll(subscriptions);
+
+        final List<PlaylistStreamEntity> joins = new ArrayList<>(playlistCount * playlistSize);
+        for (int i = 0; i < playlistCount; i++) {
+            final long playlistId = database.playlistDAO()
+                    .insert(new PlaylistEntity("Playlist " + i, "https://i.ytimg.com/" + i));
+            for (int index = 0; index < playlistSize; index++) {
+                joins.add(new PlaylistStreamEntity(playlistId,
+                        1 + random.nextInt(streamCount), index * 1024));
+            }
+        }
+        database.playlistStreamDAO().insertAll(joins);
+    }
+
+    static StreamEntity streamOf(final int index) {
+        return new StreamEntity(0, "Stream title number " + index,
+                String.format(Locale.US, "https://www.youtube.com/watch?v=%011d", index),
+                StreamType.VIDEO_STREAM, "https://i.ytimg.com/vi/" + index + "/hqdefault.jpg",
+                "Uploader " + (index % 2000), 60 + index % 3600);
+    }
+
+    static SubscriptionEntity subscriptionOf(final int index) {
+        final SubscriptionEntity subscription = new SubscriptionEntity();
+        subscription.setServiceId(0);
+        subscription.setUrl(String.format(Locale.US,
+                "https://www.youtube.com/channel/UC%022d", index));
+        subscription.setData("Channel " + index, "https://yt3.ggpht.com/" + index,
+                "Description of channel " + index, (long) index * 100);
+        return subscription;
+    }
+}
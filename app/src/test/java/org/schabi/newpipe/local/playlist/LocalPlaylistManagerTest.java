@@ -0,0 +1,80 @@
+package org.schabi.newpipe.local.playlist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.schabi.newpipe.local.playlist.LocalPlaylistManager.JOIN_INDEX_SPACING;
+import static org.schabi.newpipe.local.playlist.LocalPlaylistManager.reindexJoins;
+
+public class LocalPlaylistManagerTest {
+
+    private static int[] spaced(final int... positions) {
+        final int[] indices = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            indices[i] = positions[i] * JOIN_INDEX_SPACING;
+        }
+        return indices;
+    }
+
+    private static int countChanged(final int[] before, final int[] after) {
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) changed++;
+        }
+        return changed;
+    }
+
+    private static void assertAscending(final int[] indices) {
+        for (int i = 1; i < indices.length; i++) {
+            assertTrue(indices[i - 1] < indices[i]);
+        }
+    }
+
+    @Test
+    public void reindexJoinsUnchangedTest() {
+        final int[] persisted = spaced(0, 1, 2, 3, 4);
+        assertArrayEquals(persisted, reindexJoins(persisted));
+        assertArrayEquals(new int[0], reindexJoins(new int[0]));
+    }
+
+    @Test
+    public void reindexJoinsSingleMoveTest() {
+        // Last stream dragged to the front
+        final int[] toFront = spaced(4, 0, 1, 2, 3);
+        final int[] toFrontResult = reindexJoins(toFront);
+        assertNotNull(toFrontResult);
+        assertAscending(toFrontResult);
+        assertEquals(1, countChanged(toFront, toFrontResult));
+
+        // First stream dragged to the end
+        final int[] toEnd = spaced(1, 2, 3, 4, 0);
+        final int[] toEndResult = reindexJoins(toEnd);
+        assertNotNull(toEndResult);
+        assertAscending(toEndResult);
+        assertEquals(1, countChanged(toEnd, toEndResult));
+
+        // Stream dragged into the middle
+        final int[] toMiddle = spaced(0, 3, 1, 2, 4);
+        final int[] toMiddleResult = reindexJoins(toMiddle);
+        assertNotNull(toMiddleResult);
+        assertAscending(toMiddleResult);
+        assertEquals(1, countChanged(toMiddle, toMiddleResult));
+    }
+
+    @Test
+    public void reindexJoinsRemovalTest() {
+        final int[] persisted = spaced(0, 2, 3, 5);
+        assertArrayEquals(persisted, reindexJoins(persisted));
+    }
+
+    @Test
+    public void reindexJoinsExhaustedGapTest() {
+        // Densely indexed playlists have no room to move streams between neighbours
+        assertNull(reindexJoins(new int[]{0, 2, 1, 3}));
+        assertNotNull(reindexJoins(new int[]{0, 10, 5, 20}));
+    }
+}
@@ -0,0 +1,53 @@
+package org.schabi.newpipe.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LiveLatencyMonitorTest {
+    private final static long THRESHOLD_MILLIS = 6000;
+
+    @Test
+    public void testCatchUpAfterFallingBehind() {
+        final LiveLatencyMonitor monitor = new LiveLatencyMonitor(THRESHOLD_MILLIS);
+        assertFalse(monitor.onProgress(3_000, 0));
+        // Rebuffering, the default position moves on
+        assertFalse(monitor.onProgress(5_000, THRESHOLD_MILLIS - 1));
+        assertTrue(monitor.onProgress(9_000, THRESHOLD_MILLIS));
+        assertEquals(1, monitor.getCatchUpCount());
+    }
+
+    @Test
+    public void testNoCatchUpBeforeReachingDefaultPosition() {
+        final LiveLatencyMonitor monitor = new LiveLatencyMonitor(THRESHOLD_MILLIS);
+        assertFalse(monitor.onProgress(20_000, THRESHOLD_MILLIS * 2));
+        assertEquals(0, monitor.getCatchUpCount());
+    }
+
+    @Test
+    public void testNoCatchUpAfterUserMovedAway() {
+        final LiveLatencyMonitor monitor = new LiveLatencyMonitor(THRESHOLD_MILLIS);
+        assertFalse(monitor.onProgress(3_000, 0));
+        monitor.onUserMovedAway();
+        assertFalse(monitor.onProgress(60_000, 60_000));
+
+        // Armed again once back at the default position
+        assertFalse(monitor.onProgress(3_000, -500));
+        assertTrue(monitor.onProgress(9_000, THRESHOLD_MILLIS));
+    }
+
+    @Test
+    public void testLatencyMetrics() {
+        final LiveLatencyMonitor monitor = new LiveLatencyMonitor(THRESHOLD_MILLIS);
+        monitor.onProgress(2_000, 0);
+        monitor.onProgress(4_000, 0);
+        // Unknown latency is not sampled
+        monitor.onProgress(-1, 0);
+
+        assertEquals(2, monitor.getSampleCount());
+        assertEquals(3_000, monitor.getAverageLatencyMillis());
+        assertEquals(4_000, monitor.getMaximumLatencyMillis());
+    }
+}
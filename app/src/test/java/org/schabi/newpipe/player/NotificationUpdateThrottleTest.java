@@ -0,0 +1,80 @@
+package org.schabi.newpipe.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationUpdateThrottleTest {
+    private final static long INTERVAL_MILLIS = 1000;
+    /** The tick of the progress loop while a seekbar is shown. */
+    private final static int TICK_MILLIS = 500;
+    private final static int DURATION_MILLIS = 3 * 60 * 1000;
+
+    @Test
+    public void testUnchangedProgressIsNotPosted() {
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                TICK_MILLIS);
+        assertTrue(throttle.shouldPostProgress(10_000, DURATION_MILLIS, 0));
+        // Paused, the loop keeps reporting the same position
+        assertFalse(throttle.shouldPostProgress(10_000, DURATION_MILLIS, 5_000));
+        // Within the same second, nothing visible changes
+        assertFalse(throttle.shouldPostProgress(10_900, DURATION_MILLIS, 10_000));
+        assertTrue(throttle.shouldPostProgress(11_000, DURATION_MILLIS, 11_000));
+    }
+
+    @Test
+    public void testDurationChangeIsPosted() {
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                TICK_MILLIS);
+        assertTrue(throttle.shouldPostProgress(0, 0, 0));
+        assertTrue(throttle.shouldPostProgress(0, DURATION_MILLIS, INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void testProgressIsRateLimited() {
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                TICK_MILLIS);
+        assertTrue(throttle.shouldPostProgress(0, DURATION_MILLIS, 0));
+        // Seeking changes the shown second, but is not posted before the interval passed
+        final long earliestMillis = INTERVAL_MILLIS - TICK_MILLIS / 2;
+        assertFalse(throttle.shouldPostProgress(60_000, DURATION_MILLIS, earliestMillis - 1));
+        assertTrue(throttle.shouldPostProgress(60_000, DURATION_MILLIS, earliestMillis));
+    }
+
+    @Test
+    public void testEarlyTickIsPosted() {
+        // A loop ticking as often as the interval, with ticks arriving a little early
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                INTERVAL_MILLIS);
+        assertTrue(throttle.shouldPostProgress(0, DURATION_MILLIS, 0));
+        assertTrue(throttle.shouldPostProgress(1_000, DURATION_MILLIS, 999));
+        assertTrue(throttle.shouldPostProgress(2_000, DURATION_MILLIS, 1_997));
+    }
+
+    @Test
+    public void testPostRateOfPlayback() {
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                TICK_MILLIS);
+        int ticks = 0;
+        for (int now = 0; now <= DURATION_MILLIS; now += TICK_MILLIS) {
+            ticks++;
+            if (throttle.shouldPostProgress(now, DURATION_MILLIS, now)) throttle.onPosted(now);
+        }
+
+        // At most one post per second of playback, half of the ticks
+        assertEquals(ticks / 2 + 1, throttle.getPostCount());
+        assertEquals(60, throttle.getPostsPerMinute(), 0.5);
+    }
+
+    @Test
+    public void testPostRateNeedsTwoPosts() {
+        final NotificationUpdateThrottle throttle = new NotificationUpdateThrottle(INTERVAL_MILLIS,
+                TICK_MILLIS);
+        assertEquals(0, throttle.getPostsPerMinute(), 0);
+        throttle.onPosted(1_000);
+        assertEquals(1, throttle.getPostCount());
+        assertEquals(0, throttle.getPostsPerMinute(), 0);
+    }
+}
@@ -0,0 +1,81 @@
+package org.schabi.newpipe.player.helper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTracerTest {
+    private final static int CAPACITY = 4;
+
+    @Test
+    public void testStagesAreTimedFromThePreviousOne() {
+        final StartupTracer tracer = new StartupTracer(CAPACITY);
+        tracer.begin("main_player", 1_000);
+        tracer.mark("queue_serialized", 1_005);
+        tracer.mark("stream_extracted", 2_500);
+        final StartupTracer.Span span = tracer.end("first_frame", 3_000);
+
+        assertTrue(span.isComplete);
+        assertEquals(Arrays.asList("queue_serialized", "stream_extracted", "first_frame"),
+                span.stages);
+        assertEquals(Arrays.asList(5L, 1_495L, 500L), span.stageMillis);
+        assertEquals(2_000, span.getTotalMillis());
+        assertFalse(tracer.isTracing());
+    }
+
+    @Test
+    public void testMarksWithoutSpanAreIgnored() {
+        final StartupTracer tracer = new StartupTracer(CAPACITY);
+        tracer.mark("player_ready", 1_000);
+        assertNull(tracer.end("first_frame", 2_000));
+        assertTrue(tracer.getSpans().isEmpty());
+    }
+
+    @Test
+    public void testUnfinishedSpanIsKeptAsIncomplete() {
+        final StartupTracer tracer = new StartupTracer(CAPACITY);
+        tracer.begin("popup_player", 0);
+        tracer.mark("queue_serialized", 10);
+        tracer.begin("main_player", 100);
+        tracer.end("first_frame", 400);
+
+        final List<StartupTracer.Span> spans = tracer.getSpans();
+        assertEquals(2, spans.size());
+        assertEquals("popup_player", spans.get(0).origin);
+        assertFalse(spans.get(0).isComplete);
+        assertEquals("main_player", spans.get(1).origin);
+        assertTrue(spans.get(1).isComplete);
+    }
+
+    @Test
+    public void testOldestSpansAreDropped() {
+        final StartupTracer tracer = new StartupTracer(CAPACITY);
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            tracer.begin("player_" + i, i * 1_000);
+            tracer.end("first_frame", i * 1_000 + 500);
+        }
+
+        final List<StartupTracer.Span> spans = tracer.getSpans();
+        assertEquals(CAPACITY, spans.size());
+        assertEquals("player_" + CAPACITY, spans.get(0).origin);
+        assertEquals("player_" + (CAPACITY * 2 - 1), spans.get(CAPACITY - 1).origin);
+    }
+
+    @Test
+    public void testExport() {
+        final StartupTracer tracer = new StartupTracer(CAPACITY);
+        assertEquals("", tracer.export());
+
+        tracer.begin("background_player", 0);
+        tracer.mark("player_ready", 1_200);
+        tracer.end("audio_ready", 1_250);
+        assertEquals("origin=[background_player], complete, total=[1250ms], " +
+                "player_ready=[+1200ms], audio_ready=[+50ms]\n", tracer.export());
+    }
+}
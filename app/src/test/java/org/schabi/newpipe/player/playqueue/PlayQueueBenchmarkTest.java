@@ -0,0 +1,97 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.schabi.newpipe.util.BenchmarkReport;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the lookups of {@link PlayQueue} on a queue the size of a large channel, replaying
+ * the changes and lookups the player does when handling play queue events, once with the
+ * indexed lookup and once with the linear search it replaced. The measured timings are written
+ * to {@code build/reports/play-queue-benchmark.properties}.
+ * */
+public class PlayQueueBenchmarkTest {
+    private static final int QUEUE_SIZE = 10_000;
+    private static final int EVENT_COUNT = 2_000;
+    /** Items around the current one looked up on every event, as the media source manager does. */
+    private static final int WINDOW_SIZE = 6;
+    /** Times each item of the window is looked up while handling an event. */
+    private static final int LOOKUPS_PER_ITEM = 3;
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final long SEED = 42;
+
+    private static final BenchmarkReport report = new BenchmarkReport("play-queue-benchmark",
+            "Median play queue timings in milliseconds", TimeUnit.MILLISECONDS);
+
+    private interface Lookup {
+        int indexOf(PlayQueue queue, PlayQueueItem item);
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        report.write();
+    }
+
+    @Test
+    public void indexOfOnLargeQueue() {
+        final long linear = benchmark("linear_search", (queue, item) ->
+                queue.getStreams().indexOf(item));
+        final long indexed = benchmark("indexed_lookup", PlayQueue::indexOf);
+
+        assertTrue(String.format(Locale.US, "Indexed lookups took %d ms, linear search %d ms",
+                indexed, linear), indexed <= linear);
+    }
+
+    /*//////////////////////////////////////////////////////////////////////////
+    // Measurement
+    //////////////////////////////////////////////////////////////////////////*/
+
+    private static long benchmark(final String name, final Lookup lookup) {
+        // Every run changes its queue, so all of them are created before measuring
+        final PlayQueue[] queues = new PlayQueue[WARMUP_RUNS + MEASURED_RUNS];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = SyntheticQueue.create(QUEUE_SIZE);
+        }
+        return report.measure(name, WARMUP_RUNS, MEASURED_RUNS,
+                iteration -> replayEvents(queues[iteration], lookup));
+    }
+
+    /**
+     * Removes, moves or selects an item at random, then looks up the items around the current
+     * one, the same way for every lookup so their timings can be compared.
+     * */
+    private static void replayEvents(final PlayQueue queue, final Lookup lookup) {
+        final Random random = new Random(SEED);
+        for (int event = 0; event < EVENT_COUNT; event++) {
+            final int size = queue.size();
+            switch (random.nextInt(3)) {
+                case 0:
+                    queue.remove(random.nextInt(size));
+                    break;
+                case 1:
+                    queue.move(random.nextInt(size), random.nextInt(size));
+                    break;
+                default:
+                    queue.setIndex(random.nextInt(size));
+                    break;
+            }
+
+            final int currentIndex = queue.getIndex();
+            for (int lookups = 0; lookups < LOOKUPS_PER_ITEM; lookups++) {
+                for (int offset = -1; offset < WINDOW_SIZE - 1; offset++) {
+                    final PlayQueueItem item = queue.getItem(currentIndex + offset);
+                    if (item != null) lookup.indexOf(queue, item);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.schabi.newpipe.util.BenchmarkReport;
+import org.schabi.newpipe.util.SerializedCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.schabi.newpipe.player.playqueue.PlayQueueHandoffTest.sizeOf;
+
+/**
+ * Benchmarks handing a {@link PlayQueue} over to the player through {@link SerializedCache},
+ * for queues of a single playlist page up to a large channel. Each size is measured with the
+ * compact encoding of the queue and with the default serialization of its items, which was
+ * used before. The measured timings and sizes are written to
+ * {@code build/reports/play-queue-handoff-benchmark.properties}.
+ * */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class PlayQueueHandoffBenchmarkTest {
+    private static final int[] QUEUE_SIZES = {10, 1_000, 10_000};
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 9;
+
+    private static final BenchmarkReport report = new BenchmarkReport(
+            "play-queue-handoff-benchmark", "Median play queue handoff timings in microseconds,"
+            + " and serialized sizes in bytes", TimeUnit.MICROSECONDS);
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        report.write();
+    }
+
+    @Test
+    public void handoffLatency() throws IOException {
+        for (final int size : QUEUE_SIZES) {
+            final PlayQueue queue = SyntheticQueue.create(size);
+            final ArrayList<PlayQueueItem> items = new ArrayList<>(queue.getStreams());
+
+            final long compact = report.measure("compact_" + size, WARMUP_RUNS, MEASURED_RUNS,
+                    iteration -> PlayQueueHandoffTest.handOff(queue));
+            final long legacy = report.measure("default_" + size, WARMUP_RUNS, MEASURED_RUNS,
+                    iteration -> handOff(items));
+            report.record("compact_" + size + "_bytes", sizeOf(queue));
+            report.record("default_" + size + "_bytes", sizeOf(items));
+
+            if (size >= 1_000) {
+                assertTrue(String.format(Locale.US,
+                        "Compact handoff of %d items took %d us, default %d us",
+                        size, compact, legacy), compact <= legacy);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayList<PlayQueueItem> handOff(final ArrayList<PlayQueueItem> items) {
+        final String key = SerializedCache.getInstance().put(items, ArrayList.class);
+        assertNotNull(key);
+        return SerializedCache.getInstance().take(key, ArrayList.class);
+    }
+}
@@ -0,0 +1,91 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.schabi.newpipe.util.SerializedCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks handing a {@link PlayQueue} over to the player through {@link SerializedCache} with
+ * its compact encoding, whose timings are compared by {@link PlayQueueHandoffBenchmarkTest}.
+ * */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class PlayQueueHandoffTest {
+    @Test
+    public void handoffKeepsQueueState() {
+        final PlayQueue queue = SyntheticQueue.create(1_000);
+        queue.setIndex(10);
+        queue.setRecovery(20, 12_345);
+        queue.shuffle();
+
+        final PlayQueue handedOff = handOff(queue);
+        assertNotNull(handedOff);
+        assertEquals(queue.getIndex(), handedOff.getIndex());
+        assertEquals(queue.size(), handedOff.size());
+        assertTrue(handedOff.isShuffled());
+        for (int i = 0; i < queue.size(); i++) {
+            assertItemEquals(queue.getItem(i), handedOff.getItem(i));
+        }
+
+        // The backup must hold the same instances as the queue for unshuffling to work
+        final PlayQueueItem current = handedOff.getItem();
+        queue.unshuffle();
+        handedOff.unshuffle();
+        assertSame(current, handedOff.getItem());
+        for (int i = 0; i < queue.size(); i++) {
+            assertItemEquals(queue.getItem(i), handedOff.getItem(i));
+        }
+    }
+
+    @Test
+    public void compactEncodingIsSmaller() throws IOException {
+        for (final int size : new int[]{1_000, 10_000}) {
+            final PlayQueue queue = SyntheticQueue.create(size);
+            final ArrayList<PlayQueueItem> items = new ArrayList<>(queue.getStreams());
+            assertTrue("Compact encoding is larger for " + size + " items",
+                    sizeOf(queue) < sizeOf(items));
+        }
+    }
+
+    static PlayQueue handOff(final PlayQueue queue) {
+        final String key = SerializedCache.getInstance().put(queue, PlayQueue.class);
+        assertNotNull(key);
+        return SerializedCache.getInstance().take(key, PlayQueue.class);
+    }
+
+    static int sizeOf(final Serializable object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream output = new ObjectOutputStream(bytes);
+        try {
+            output.writeObject(object);
+        } finally {
+            output.close();
+        }
+        return bytes.size();
+    }
+
+    private static void assertItemEquals(final PlayQueueItem expected,
+                                         final PlayQueueItem actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getServiceId(), actual.getServiceId());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+        assertEquals(expected.getUploader(), actual.getUploader());
+        assertEquals(expected.getStreamType(), actual.getStreamType());
+        assertEquals(expected.getRecoveryPosition(), actual.getRecoveryPosition());
+    }
+}
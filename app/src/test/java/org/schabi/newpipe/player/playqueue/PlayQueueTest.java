@@ -0,0 +1,48 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlayQueueTest {
+    private static final int QUEUE_SIZE = 10_000;
+    private static final int EVENT_COUNT = 2_000;
+    private static final int LOOKUPS_PER_EVENT = 6;
+
+    @Test
+    public void indexOfMatchesLinearSearch() {
+        final Random random = new Random(42);
+        final PlayQueue queue = SyntheticQueue.create(QUEUE_SIZE);
+
+        for (int event = 0; event < EVENT_COUNT; event++) {
+            final int size = queue.size();
+            final PlayQueueItem removed;
+            switch (random.nextInt(6)) {
+                case 0:
+                    removed = queue.getItem(random.nextInt(size));
+                    queue.remove(queue.indexOf(removed));
+                    assertEquals(-1, queue.indexOf(removed));
+                    break;
+                case 1:
+                    queue.move(random.nextInt(size), random.nextInt(size));
+                    break;
+                case 2:
+                    queue.append(SyntheticQueue.createItems(random.nextInt(20)));
+                    break;
+                case 3:
+                    if (queue.isShuffled()) queue.unshuffle(); else queue.shuffle();
+                    break;
+                default:
+                    queue.setIndex(random.nextInt(size));
+                    break;
+            }
+
+            for (int i = 0; i < LOOKUPS_PER_EVENT; i++) {
+                final PlayQueueItem item = queue.getItem(random.nextInt(queue.size()));
+                assertEquals(queue.getStreams().indexOf(item), queue.indexOf(item));
+            }
+        }
+    }
+}
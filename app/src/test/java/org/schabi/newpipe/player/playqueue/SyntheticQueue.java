@@ -0,0 +1,42 @@
+package org.schabi.newpipe.player.playqueue;
+
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates play queues of streams from a few uploaders, as a playlist of a few channels or a
+ * large channel would have.
+ * */
+final class SyntheticQueue {
+    private static final int UPLOADER_COUNT = 5;
+
+    private SyntheticQueue() {}
+
+    static PlayQueue create(final int size) {
+        final List<StreamInfoItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(createStream(i));
+        }
+        return new SinglePlayQueue(items, 0);
+    }
+
+    static PlayQueueItem[] createItems(final int count) {
+        final PlayQueueItem[] items = new PlayQueueItem[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new PlayQueueItem(createStream(i));
+        }
+        return items;
+    }
+
+    private static StreamInfoItem createStream(final int id) {
+        final StreamInfoItem item = new StreamInfoItem(0,
+                "https://www.youtube.com/watch?v=" + id, "Stream " + id, StreamType.VIDEO_STREAM);
+        item.setUploaderName("Uploader " + (id % UPLOADER_COUNT));
+        item.setThumbnailUrl("https://i.ytimg.com/vi/" + id + "/hqdefault.jpg");
+        item.setDuration(60 + id % 600);
+        return item;
+    }
+}
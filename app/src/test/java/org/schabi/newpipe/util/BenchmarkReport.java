@@ -0,0 +1,96 @@
+package org.schabi.newpipe.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the median timings of a benchmark and writes them to
+ * {@code build/reports/<name>.properties}, to be compared between runs on the same machine.
+ * <p>
+ * Timings vary too much between machines to fail unit tests on, so benchmarks are named
+ * {@code *BenchmarkTest} and only run with the {@code benchmark} task, while whatever they
+ * check independently of the machine belongs in the unit tests.
+ * */
+public final class BenchmarkReport {
+    public interface Run {
+        void run(int iteration);
+    }
+
+    private final File file;
+    private final String comment;
+    private final TimeUnit unit;
+    private final Properties results = new Properties();
+
+    public BenchmarkReport(final String name, final String comment, final TimeUnit unit) {
+        this.file = new File("build/reports/" + name + ".properties");
+        this.comment = comment;
+        this.unit = unit;
+    }
+
+    /**
+     * Runs the benchmark {@code warmupRuns} times, then measures it {@code measuredRuns} times.
+     * Iterations are numbered across both, so runs relying on distinct iterations never
+     * repeat one.
+     *
+     * @return the median of the measured timings, which is also recorded under {@code name}
+     * */
+    public long measure(final String name, final int warmupRuns, final int measuredRuns,
+                        final Run run) {
+        for (int i = 0; i < warmupRuns; i++) {
+            run.run(i);
+        }
+
+        final List<Long> timings = new ArrayList<>(measuredRuns);
+        for (int i = 0; i < measuredRuns; i++) {
+            final long start = System.nanoTime();
+            run.run(warmupRuns + i);
+            timings.add(unit.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        }
+        Collections.sort(timings);
+        final long median = timings.get(measuredRuns / 2);
+        record(name, median);
+        System.out.println(String.format(Locale.US, "%s: %d %s", name, median,
+                unit.name().toLowerCase(Locale.US)));
+        return median;
+    }
+
+    public void record(final String name, final long value) {
+        results.setProperty(name, String.valueOf(value));
+    }
+
+    public void write() throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) return;
+        final OutputStream output = new FileOutputStream(file);
+        try {
+            results.store(output, comment);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads a baseline tracked with the test resources, which is refreshed from the report
+     * whenever a change is expected to move the timings.
+     * */
+    public static Properties loadBaseline(final String resource) throws IOException {
+        final Properties baseline = new Properties();
+        final InputStream input = BenchmarkReport.class.getResourceAsStream(resource);
+        if (input == null) throw new IOException("Missing benchmark baseline " + resource);
+        try {
+            baseline.load(input);
+        } finally {
+            input.close();
+        }
+        return baseline;
+    }
+}
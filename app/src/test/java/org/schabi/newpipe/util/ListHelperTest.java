@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ListHelperTest {
     private static final String BEST_RESOLUTION_KEY = "best_resolution";
@@ -298,4 +299,59 @@ public class ListHelperTest {
         // Can't find a match
         assertEquals(-1, ListHelper.getVideoStreamIndex("100p", null, testList));
     }
+
+    @Test
+    public void getBandwidthLimitedResolutionIndexTest() throws Exception {
+        // "2160p60", "2160p", "1440p60", "1080p60", "1080p", "720p60", "720p", "480p", "360p", "240p", "144p"
+        List<VideoStream> testList = ListHelper.getSortedStreamVideosList(MediaFormat.MPEG_4, true, videoStreamsTestList, videoOnlyStreamsTestList, false);
+        final int preferredIndex = 4;
+        assertEquals("1080p", testList.get(preferredIndex).resolution);
+
+        // No estimate or enough bandwidth
+        assertEquals(preferredIndex, ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, -1, 500));
+        assertEquals(preferredIndex, ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, 100_000_000, 500));
+        assertEquals(preferredIndex, ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, 8_000_000, 500));
+
+        // Lowered to what the bandwidth carries
+        assertEquals("480p", testList.get(ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, 2_000_000, 500)).resolution);
+
+        // Lowered to what loads the start buffer in time
+        assertEquals("480p", testList.get(ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, 8_000_000, 4000)).resolution);
+
+        // Lowest resolution if nothing fits, never raised above the preferred one
+        assertEquals(testList.size() - 1, ListHelper.getBandwidthLimitedResolutionIndex(preferredIndex, testList, 10_000, 500));
+        assertEquals(testList.size() - 1, ListHelper.getBandwidthLimitedResolutionIndex(testList.size() - 1, testList, 100_000_000, 500));
+        assertEquals(-1, ListHelper.getBandwidthLimitedResolutionIndex(-1, testList, 2_000_000, 500));
+    }
+
+    @Test
+    public void getEstimatedBitrateTest() throws Exception {
+        assertEquals(2_500_000, ListHelper.getEstimatedBitrate(new VideoStream("", MediaFormat.MPEG_4, "720p")));
+        assertEquals(3_750_000, ListHelper.getEstimatedBitrate(new VideoStream("", MediaFormat.MPEG_4, "720p60")));
+        assertEquals(4_500_000 + 128_000, ListHelper.getEstimatedBitrate(new VideoStream("", MediaFormat.MPEG_4, "1080p", true)));
+        assertTrue(ListHelper.getEstimatedBitrate(new VideoStream("", MediaFormat.MPEG_4, "4320p")) >= 18_000_000);
+        assertEquals(0, ListHelper.getEstimatedBitrate(new VideoStream("", MediaFormat.MPEG_4, "")));
+    }
+
+    @Test
+    public void getFastStartResolutionIndexTest() throws Exception {
+        List<VideoStream> testList = Arrays.asList(
+                new VideoStream("", MediaFormat.MPEG_4,   /**/ "1080p", true),
+                new VideoStream("", MediaFormat.MPEG_4,   /**/ "720p", true),
+                new VideoStream("", MediaFormat.MPEG_4,   /**/ "720p"),
+                new VideoStream("", MediaFormat.WEBM,     /**/ "480p", true),
+                new VideoStream("", MediaFormat.MPEG_4,   /**/ "360p"),
+                new VideoStream("", MediaFormat.MPEG_4,   /**/ "240p", true),
+                new VideoStream("", MediaFormat.v3GPP,    /**/ "144p"));
+
+        // Lowest stream of the same format and kind
+        assertEquals(5, ListHelper.getFastStartResolutionIndex(0, testList));
+        assertEquals(5, ListHelper.getFastStartResolutionIndex(1, testList));
+        assertEquals(4, ListHelper.getFastStartResolutionIndex(2, testList));
+
+        // Nothing lower to start with
+        assertEquals(3, ListHelper.getFastStartResolutionIndex(3, testList));
+        assertEquals(6, ListHelper.getFastStartResolutionIndex(6, testList));
+        assertEquals(-1, ListHelper.getFastStartResolutionIndex(-1, testList));
+    }
 }
\ No newline at end of file